@@ -0,0 +1,147 @@
+package com.springboot.activityservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares ingest throughput of POST /api/activities with POST /api/activities/batch against a
+ * running activity-service (called directly, not through the gateway). The user must exist in
+ * user-service. Configured with system properties:
+ * <pre>
+ *   bench.base-url     http://localhost:8082
+ *   bench.user-id      (required)
+ *   bench.count        2000   activities per mode
+ *   bench.batch-size   50
+ *   bench.concurrency  8      concurrent requests
+ * </pre>
+ * Run with {@code mvn -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.springboot.activityservice.benchmark.IngestBenchmark -Dbench.user-id=...}.
+ */
+public class IngestBenchmark {
+
+    private static final String[] TYPES = {"RUNNING", "WALKING", "CYCLING", "SWIMMING", "WEIGHT_TRAINING", "YOGA", "HIIT"};
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final String baseUrl;
+    private final String userId;
+    private final int concurrency;
+
+    private IngestBenchmark(String baseUrl, String userId, int concurrency) {
+        this.baseUrl = baseUrl;
+        this.userId = userId;
+        this.concurrency = concurrency;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String userId = System.getProperty("bench.user-id");
+        if (userId == null) {
+            throw new IllegalArgumentException("Set -Dbench.user-id to an existing user");
+        }
+        int count = Integer.getInteger("bench.count", 2000);
+        int batchSize = Integer.getInteger("bench.batch-size", 50);
+        IngestBenchmark benchmark = new IngestBenchmark(System.getProperty("bench.base-url", "http://localhost:8082"),
+                userId, Integer.getInteger("bench.concurrency", 8));
+
+        // Warm up both paths, including the user validation cache
+        benchmark.run("warmup single", Math.min(count, 200), 1);
+        benchmark.run("warmup batch", Math.min(count, 200), batchSize);
+        benchmark.run("single", count, 1).print();
+        benchmark.run("batch", count, batchSize).print();
+    }
+
+    private Result run(String name, int count, int batchSize) throws Exception {
+        int requests = (count + batchSize - 1) / batchSize;
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        long[] latencies = new long[requests];
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long started = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int worker = 0; worker < concurrency; worker++) {
+            workers.add(executor.submit(() -> {
+                int request;
+                while ((request = next.getAndIncrement()) < requests) {
+                    int size = Math.min(batchSize, count - request * batchSize);
+                    long start = System.nanoTime();
+                    try {
+                        if (!send(size, batchSize > 1)) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[request] = System.nanoTime() - start;
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        executor.shutdown();
+        Arrays.sort(latencies);
+        return new Result(name, count, requests, failures.get(), seconds, latencies);
+    }
+
+    private boolean send(int size, boolean batch) throws Exception {
+        Object body;
+        if (batch) {
+            List<Map<String, Object>> activities = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                activities.add(activity());
+            }
+            body = Map.of("activities", activities);
+        } else {
+            body = activity();
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + (batch ? "/api/activities/batch" : "/api/activities")))
+                .header("Content-Type", "application/json")
+                .header("X-User-ID", userId)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+    }
+
+    private Map<String, Object> activity() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int duration = 15 + random.nextInt(90);
+        Map<String, Object> activity = new HashMap<>();
+        activity.put("activityType", TYPES[random.nextInt(TYPES.length)]);
+        activity.put("duration", duration);
+        activity.put("caloriesBurned", duration * (5 + random.nextInt(8)));
+        activity.put("startTime", LocalDateTime.now().minusDays(random.nextInt(30)).toString());
+        activity.put("additionalMetrics", Map.of("distance", duration / 6.0, "averageHeartRate", 110 + random.nextInt(60)));
+        return activity;
+    }
+
+    private record Result(String name, int activities, int requests, int failures, double seconds, long[] latencies) {
+
+        void print() {
+            System.out.printf("%-6s %6d activities in %5d requests: %8.1f activities/s, request p50=%.1f ms p99=%.1f ms, %d failed%n",
+                    name, activities, requests, activities / seconds,
+                    percentile(0.50) / 1e6, percentile(0.99) / 1e6, failures);
+        }
+
+        private long percentile(double quantile) {
+            return latencies[Math.min(latencies.length - 1, (int) Math.ceil(quantile * latencies.length) - 1)];
+        }
+    }
+}
@@ -17,6 +17,11 @@ public class RabbitMQConfig {
         return new Queue("activity.queue",true);
     }
 
+    @Bean
+    public Queue activityBulkQueue() {
+        return new Queue("activity.bulk.queue",true);
+    }
+
     @Bean
     public DirectExchange activityExchange() {
         return new DirectExchange("fitness.exchange");
@@ -29,6 +34,13 @@ public class RabbitMQConfig {
                 .with("activity.tracking");
     }
 
+    @Bean
+    public Binding activityBulkBinding(Queue activityBulkQueue, DirectExchange activityExchange) {
+        return BindingBuilder.bind(activityBulkQueue)
+                .to(activityExchange)
+                .with("activity.bulk");
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -1,14 +1,28 @@
 package com.springboot.activityservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.springboot.activityservice.dto.ActivityRequest;
 import com.springboot.activityservice.dto.ActivityResponse;
-import com.springboot.activityservice.model.Activity;
+import com.springboot.activityservice.dto.ActivitySummary;
+import com.springboot.activityservice.dto.BatchActivityRequest;
+import com.springboot.activityservice.dto.BatchActivityResponse;
+import com.springboot.activityservice.dto.CursorPage;
+import com.springboot.activityservice.dto.ImportReport;
+import com.springboot.activityservice.model.ActivityType;
+import com.springboot.activityservice.service.ActivityImportService;
 import com.springboot.activityservice.service.ActivityService;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/activities")
@@ -16,6 +30,8 @@ import java.util.List;
 public class ActivityController {
 
     private ActivityService activityService;
+    private ActivityImportService activityImportService;
+    private ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<ActivityResponse> trackActivity(@RequestBody ActivityRequest request, @RequestHeader("X-User-ID") String userId) {
@@ -25,11 +41,65 @@ public class ActivityController {
         return ResponseEntity.ok(activityService.trackActivity(request));
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<BatchActivityResponse> trackActivities(@RequestBody BatchActivityRequest request, @RequestHeader("X-User-ID") String userId) {
+        return ResponseEntity.ok(activityService.trackActivities(userId, request.getActivities()));
+    }
+
+    // Streamed NDJSON, one activity per line; poll GET /import/{importId} for progress
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "application/octet-stream", "text/plain"})
+    public ResponseEntity<ImportReport> importActivities(InputStream body,
+                                                         @RequestHeader("X-User-ID") String userId,
+                                                         @RequestHeader(value = "X-Import-ID", required = false) String importId) {
+        return ResponseEntity.ok(activityImportService.importActivities(userId, importId, body));
+    }
+
+    @GetMapping("/import")
+    public ResponseEntity<List<ImportReport>> getImports(@RequestHeader("X-User-ID") String userId) {
+        return ResponseEntity.ok(activityImportService.getImports(userId));
+    }
+
+    @GetMapping("/import/{importId}")
+    public ResponseEntity<ImportReport> getImport(@PathVariable String importId, @RequestHeader("X-User-ID") String userId) {
+        return ResponseEntity.of(activityImportService.getImport(userId, importId));
+    }
+
     @GetMapping
     public ResponseEntity<List<ActivityResponse>> getUserActivities(@RequestHeader("X-User-ID") String userId) {
         return ResponseEntity.ok(activityService.getUserActivities(userId));
     }
 
+    @GetMapping("/summaries")
+    public ResponseEntity<CursorPage<ActivitySummary>> getUserActivitySummaries(@RequestHeader("X-User-ID") String userId,
+                                                                                @RequestParam(required = false) ActivityType type,
+                                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                                @RequestParam(required = false) String cursor,
+                                                                                @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(activityService.getUserActivitySummaries(userId, type, from, to, cursor, size));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUserActivities(@RequestHeader("X-User-ID") String userId,
+                                                                      @RequestParam(required = false) ActivityType type,
+                                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        StreamingResponseBody body = out -> {
+            try (Stream<ActivityResponse> activities = activityService.streamUserActivities(userId, type, from, to);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                for (ActivityResponse activity : (Iterable<ActivityResponse>) activities::iterator) {
+                    objectMapper.writeValue(generator, activity);
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/{activityId}")
     public ResponseEntity<ActivityResponse> getActivity(@PathVariable String activityId) {
         return ResponseEntity.ok(activityService.getActivityById(activityId));
@@ -0,0 +1,16 @@
+package com.springboot.activityservice.dto;
+
+import com.springboot.activityservice.model.ActivityType;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ActivitySummary {
+
+    private String id;
+    private ActivityType activityType;
+    private Integer duration;
+    private Integer caloriesBurned;
+    private LocalDateTime startTime;
+}
@@ -0,0 +1,11 @@
+package com.springboot.activityservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchActivityRequest {
+
+    private List<ActivityRequest> activities;
+}
@@ -0,0 +1,18 @@
+package com.springboot.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchActivityResponse {
+
+    private int created;
+    private int rejected;
+    // One per submitted activity, in request order
+    private List<BatchItemResult> results;
+}
@@ -0,0 +1,27 @@
+package com.springboot.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItemResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+
+    private int index;
+    private String status;
+    private String activityId;
+    private String error;
+
+    public static BatchItemResult created(int index, String activityId) {
+        return new BatchItemResult(index, CREATED, activityId, null);
+    }
+
+    public static BatchItemResult rejected(int index, String error) {
+        return new BatchItemResult(index, REJECTED, null, error);
+    }
+}
@@ -0,0 +1,30 @@
+package com.springboot.activityservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportReport {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    private String importId;
+    private String userId;
+    private String status;
+    private long linesRead;
+    private long created;
+    private long rejected;
+    // First rejections only, index is the 1-based line number
+    private List<BatchItemResult> errors;
+    private String failure;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
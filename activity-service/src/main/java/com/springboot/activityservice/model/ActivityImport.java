@@ -0,0 +1,41 @@
+package com.springboot.activityservice.model;
+
+import com.springboot.activityservice.dto.BatchItemResult;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress of an NDJSON import, saved by the instance running it so that any instance can answer
+ * status polls. Import ids are chosen by the client and only unique per user.
+ */
+@Document(collection = "activity_imports")
+@CompoundIndex(name = "user_import_idx", def = "{'userId': 1, 'importId': 1}", unique = true)
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityImport {
+
+    @Id
+    private String id;
+    private String userId;
+    private String importId;
+    private String status;
+    private long linesRead;
+    private long created;
+    private long rejected;
+    private List<BatchItemResult> errors;
+    private String failure;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    // Last progress save; the document expires a retention period after it
+    private LocalDateTime updatedAt;
+}
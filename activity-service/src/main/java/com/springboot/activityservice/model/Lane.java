@@ -0,0 +1,10 @@
+package com.springboot.activityservice.model;
+
+/**
+ * Priority lane an activity is published on: INTERACTIVE for activities a user just tracked,
+ * BULK for imports and re-analysis.
+ */
+public enum Lane {
+    INTERACTIVE,
+    BULK
+}
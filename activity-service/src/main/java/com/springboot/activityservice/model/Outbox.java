@@ -0,0 +1,39 @@
+package com.springboot.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pending publish of an activity, stored inside the activity document so both are written in
+ * one atomic insert. Removed once the broker has confirmed the message.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class Outbox {
+
+    private Lane lane;
+    private LocalDateTime createdAt;
+    // Earliest time the relay may (re)try; moved forward while a relay holds the entry
+    private LocalDateTime nextAttemptAt;
+    private int attempts;
+    // Batch that currently holds the entry
+    private String claim;
+    // Created with the request and published unchanged on every attempt, to link it to ai-service logs
+    private String traceId;
+
+    public static Outbox pending(Lane lane, String traceId) {
+        LocalDateTime now = LocalDateTime.now();
+        return Outbox.builder()
+                .lane(lane)
+                .traceId(traceId)
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+    }
+}
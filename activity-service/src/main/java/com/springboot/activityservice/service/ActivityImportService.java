@@ -0,0 +1,362 @@
+package com.springboot.activityservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.springboot.activityservice.dto.ActivityRequest;
+import com.springboot.activityservice.dto.BatchItemResult;
+import com.springboot.activityservice.dto.ImportReport;
+import com.springboot.activityservice.model.Activity;
+import com.springboot.activityservice.model.ActivityImport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Imports activity history from an NDJSON request body, one ActivityRequest per line. The body
+ * is read a line at a time and written in fixed-size unordered inserts, so memory use depends on
+ * the chunk size and not the file size; reading stops while a chunk is written, which holds the
+ * client back through the request stream. Lines longer than {@code max-line-length} are skipped
+ * and rejected without being buffered whole. Imported activities go to the outbox on the bulk lane,
+ * and reading also pauses while the outbox holds more than its limit, so an import cannot run
+ * ahead of RabbitMQ. Progress is saved to Mongo every chunk of lines, so a status poll that the
+ * load balancer sends to another instance still finds it; saved imports expire after
+ * {@code retention} without progress.
+ */
+@Service
+@Slf4j
+public class ActivityImportService {
+
+    private final ActivityService activityService;
+    private final OutboxRelay outboxRelay;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectReader reader;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final int maxLineLength;
+    private final long maxOutboxDepth;
+    private final Duration backpressureTimeout;
+    private final Duration retention;
+    private final Counter createdCounter;
+    private final Counter rejectedCounter;
+    private volatile boolean indexEnsured;
+
+    public ActivityImportService(ActivityService activityService,
+                                 OutboxRelay outboxRelay,
+                                 MongoTemplate mongoTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${activity.import.chunk-size:500}") int chunkSize,
+                                 @Value("${activity.import.max-errors:100}") int maxErrors,
+                                 @Value("${activity.import.max-line-length:65536}") int maxLineLength,
+                                 @Value("${activity.import.max-outbox-depth:20000}") long maxOutboxDepth,
+                                 @Value("${activity.import.backpressure-timeout:PT5M}") Duration backpressureTimeout,
+                                 @Value("${activity.import.retention:PT1H}") Duration retention) {
+        this.activityService = activityService;
+        this.outboxRelay = outboxRelay;
+        this.mongoTemplate = mongoTemplate;
+        this.reader = objectMapper.readerFor(ActivityRequest.class);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.maxLineLength = maxLineLength;
+        this.maxOutboxDepth = maxOutboxDepth;
+        this.backpressureTimeout = backpressureTimeout;
+        this.retention = retention;
+        this.createdCounter = Counter.builder("activity.import.records").tag("result", "created").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("activity.import.records").tag("result", "rejected").register(meterRegistry);
+    }
+
+    /**
+     * Runs the import on the calling thread and returns its summary. Progress is available from
+     * {@link #getImport} on any instance while it runs.
+     *
+     * @param importId client-chosen id to poll progress with, unique per user, or null to generate one
+     */
+    public ImportReport importActivities(String userId, String importId, InputStream body) {
+
+        if (!activityService.isValidUser(userId)) {
+            throw new RuntimeException("Invalid user: "+userId);
+        }
+        ensureIndex();
+        ImportJob job = new ImportJob(importId == null ? UUID.randomUUID().toString() : importId, userId);
+        try {
+            job.id = mongoTemplate.insert(job.toDocument()).getId();
+        } catch (DuplicateKeyException e) {
+            throw new RuntimeException("Import already exists: "+job.importId);
+        }
+
+        String traceId = ActivityService.newTraceId();
+        List<Activity> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkLines = new ArrayList<>(chunkSize);
+        try (BoundedLineReader lines = new BoundedLineReader(new InputStreamReader(body, StandardCharsets.UTF_8), maxLineLength)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                job.read(lineNumber);
+                if (lineNumber % chunkSize == 0) {
+                    save(job);
+                }
+                if (lines.isTruncated()) {
+                    job.reject(lineNumber, "Line longer than "+maxLineLength+" characters");
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                ActivityRequest request;
+                try {
+                    request = reader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    job.reject(lineNumber, "Malformed JSON: "+e.getOriginalMessage());
+                    continue;
+                }
+                String error = activityService.validate(request);
+                if (error != null) {
+                    job.reject(lineNumber, error);
+                    continue;
+                }
+                chunk.add(activityService.toBulkActivity(userId, request, LocalDateTime.now(), traceId));
+                chunkLines.add(lineNumber);
+                if (chunk.size() == chunkSize) {
+                    writeChunk(job, chunk, chunkLines);
+                }
+            }
+            writeChunk(job, chunk, chunkLines);
+            job.finish(ImportReport.COMPLETED, null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Import {} for user {} failed after {} lines", job.importId, userId, job.snapshot().getLinesRead(), e);
+            job.finish(ImportReport.FAILED, e.getMessage());
+        }
+        save(job);
+        ImportReport report = job.snapshot();
+        log.info("Import {} for user {} (trace {}): {} lines, {} created, {} rejected",
+                report.getImportId(), userId, traceId, report.getLinesRead(), report.getCreated(), report.getRejected());
+        return report;
+    }
+
+    public Optional<ImportReport> getImport(String userId, String importId) {
+        Query query = Query.query(Criteria.where("userId").is(userId).and("importId").is(importId));
+        return Optional.ofNullable(mongoTemplate.findOne(query, ActivityImport.class)).map(this::toReport);
+    }
+
+    public List<ImportReport> getImports(String userId) {
+        Query query = Query.query(Criteria.where("userId").is(userId)).with(Sort.by(Sort.Direction.DESC, "startedAt"));
+        return mongoTemplate.find(query, ActivityImport.class).stream().map(this::toReport).toList();
+    }
+
+    private void writeChunk(ImportJob job, List<Activity> chunk, List<Long> chunkLines) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        awaitOutbox();
+        Map<Integer, String> failures = activityService.insertAll(chunk);
+        for (int i = 0; i < chunk.size(); i++) {
+            String failure = failures.get(i);
+            if (failure == null) {
+                job.created();
+            } else {
+                job.reject(chunkLines.get(i), failure);
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    // Blocks while the relay is behind; fails the import if it does not catch up in time
+    private void awaitOutbox() {
+        if (outboxRelay.depth() <= maxOutboxDepth) {
+            return;
+        }
+        long deadline = System.nanoTime() + backpressureTimeout.toNanos();
+        try {
+            while (outboxRelay.depth() > maxOutboxDepth) {
+                if (System.nanoTime() > deadline) {
+                    throw new RuntimeException("Outbox did not drain within "+backpressureTimeout);
+                }
+                Thread.sleep(500);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Import interrupted");
+        }
+    }
+
+    // A failed progress save only delays what pollers see, so it does not fail the import
+    private void save(ImportJob job) {
+        try {
+            mongoTemplate.save(job.toDocument());
+        } catch (RuntimeException e) {
+            log.warn("Failed to save progress of import {} for user {}", job.importId, job.userId, e);
+        }
+    }
+
+    private ImportReport toReport(ActivityImport saved) {
+        return new ImportReport(saved.getImportId(), saved.getUserId(), saved.getStatus(), saved.getLinesRead(),
+                saved.getCreated(), saved.getRejected(), saved.getErrors(), saved.getFailure(),
+                saved.getStartedAt(), saved.getFinishedAt());
+    }
+
+    // The TTL follows the retention property, so it is created here rather than declared on ActivityImport
+    private void ensureIndex() {
+        if (!indexEnsured) {
+            mongoTemplate.indexOps(ActivityImport.class).ensureIndex(new Index()
+                    .on("updatedAt", Sort.Direction.ASC)
+                    .named("updated_ttl_idx")
+                    .expire(retention));
+            indexEnsured = true;
+        }
+    }
+
+    /**
+     * Splits a reader into lines like BufferedReader, but keeps at most {@code maxLength}
+     * characters of each one, so a body without newlines cannot exhaust the heap.
+     */
+    private static final class BoundedLineReader implements Closeable {
+
+        private final Reader in;
+        private final int maxLength;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int position;
+        private int limit;
+        private boolean truncated;
+
+        private BoundedLineReader(Reader in, int maxLength) {
+            this.in = in;
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * @return the next line without its terminator, cut to the maximum length, or null at
+         * the end of the input
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            boolean started = false;
+            while (true) {
+                if (position == limit) {
+                    int read = in.read(buffer);
+                    if (read == -1) {
+                        return started ? line.toString() : null;
+                    }
+                    position = 0;
+                    limit = read;
+                }
+                started = true;
+                char c = buffer[position++];
+                if (c == '\n') {
+                    return line.toString();
+                }
+                // JSON never needs a raw carriage return, so CRLF and stray CRs are dropped
+                if (c == '\r') {
+                    continue;
+                }
+                if (line.length() < maxLength) {
+                    line.append(c);
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+
+        // Whether the line last returned was longer than the maximum and got cut
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private final class ImportJob {
+
+        private final String importId;
+        private final String userId;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final List<BatchItemResult> errors = new ArrayList<>();
+        private long linesRead;
+        private long created;
+        private long rejected;
+        private String status = ImportReport.RUNNING;
+        private String failure;
+        private LocalDateTime finishedAt;
+        // Saved document's id, set once the import is registered
+        private String id;
+
+        private ImportJob(String importId, String userId) {
+            this.importId = importId;
+            this.userId = userId;
+        }
+
+        synchronized void read(long lineNumber) {
+            linesRead = lineNumber;
+        }
+
+        synchronized void created() {
+            created++;
+            createdCounter.increment();
+        }
+
+        synchronized void reject(long lineNumber, String error) {
+            rejected++;
+            rejectedCounter.increment();
+            if (errors.size() < maxErrors) {
+                errors.add(BatchItemResult.rejected((int) lineNumber, error));
+            }
+        }
+
+        synchronized void finish(String status, String failure) {
+            this.status = status;
+            this.failure = failure;
+            this.finishedAt = LocalDateTime.now();
+        }
+
+        synchronized ActivityImport toDocument() {
+            return ActivityImport.builder()
+                    .id(id)
+                    .userId(userId)
+                    .importId(importId)
+                    .status(status)
+                    .linesRead(linesRead)
+                    .created(created)
+                    .rejected(rejected)
+                    .errors(List.copyOf(errors))
+                    .failure(failure)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+        }
+
+        synchronized ImportReport snapshot() {
+            return new ImportReport(importId, userId, status, linesRead, created, rejected,
+                    List.copyOf(errors), failure, startedAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.springboot.activityservice.service;
+
+import com.springboot.activityservice.model.Activity;
+import com.springboot.activityservice.model.Lane;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class ActivityPublisher {
+
+    public static final String LANE_HEADER = "x-lane";
+    // Epoch millis at publish, for queue-wait and end-to-end latency in ai-service
+    public static final String PUBLISHED_AT_HEADER = "x-published-at";
+    public static final String TRACE_ID_HEADER = "x-trace-id";
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${rabbitmq.routing.key}")
+    private String routingKey;
+
+    @Value("${rabbitmq.routing.bulk-key:activity.bulk}")
+    private String bulkRoutingKey;
+
+    // Each lane has its own queue, so bulk work never sits in front of interactive messages.
+    // The broker's confirm, or the returned message if it was unroutable, completes the correlation data
+    public void publish(Activity activity, Lane lane, CorrelationData correlationData) {
+        rabbitTemplate.convertAndSend(exchange, lane == Lane.BULK ? bulkRoutingKey : routingKey, activity, message -> {
+            message.getMessageProperties().setHeader(LANE_HEADER, lane.name());
+            message.getMessageProperties().setHeader(PUBLISHED_AT_HEADER, System.currentTimeMillis());
+            // Absent on entries written before trace ids were stored
+            if (activity.getOutbox().getTraceId() != null) {
+                message.getMessageProperties().setHeader(TRACE_ID_HEADER, activity.getOutbox().getTraceId());
+            }
+            return message;
+        }, correlationData);
+    }
+}
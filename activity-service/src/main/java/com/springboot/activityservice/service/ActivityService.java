@@ -2,41 +2,79 @@ package com.springboot.activityservice.service;
 
 import com.springboot.activityservice.dto.ActivityRequest;
 import com.springboot.activityservice.dto.ActivityResponse;
+import com.springboot.activityservice.dto.ActivitySummary;
+import com.springboot.activityservice.dto.BatchActivityResponse;
+import com.springboot.activityservice.dto.BatchItemResult;
+import com.springboot.activityservice.dto.CursorPage;
 import com.springboot.activityservice.model.Activity;
+import com.springboot.activityservice.model.ActivityType;
+import com.springboot.activityservice.model.Lane;
+import com.springboot.activityservice.model.Outbox;
 import com.springboot.activityservice.repository.ActivityRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ActivityService {
 
-    private final ActivityRepository activityRepository;
-    private final UserValidationService userValidationService;
-    private final RabbitTemplate rabbitTemplate;
-
+    private static final int MAX_PAGE_SIZE = 100;
+    // Matches the userId+startTime index; _id breaks ties between equal start times
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("startTime"), Sort.Order.desc("_id"));
 
+    private final ActivityRepository activityRepository;
+    private final UserValidationCache userValidationCache;
+    private final MongoTemplate mongoTemplate;
+    private final int maxBatchSize;
+    private final Timer validateTimer;
+    private final Timer saveTimer;
+    private final Timer saveBatchTimer;
 
-    @Value("${rabbitmq.exchange.name}")
-    private String exchange;
-
-    @Value("${rabbitmq.routing.key}")
-    private String routingKey;
+    public ActivityService(ActivityRepository activityRepository,
+                           UserValidationCache userValidationCache,
+                           MongoTemplate mongoTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${activity.batch.max-size:500}") int maxBatchSize) {
+        this.activityRepository = activityRepository;
+        this.userValidationCache = userValidationCache;
+        this.mongoTemplate = mongoTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.validateTimer = stageTimer(meterRegistry, "validate");
+        this.saveTimer = stageTimer(meterRegistry, "save");
+        this.saveBatchTimer = stageTimer(meterRegistry, "save_batch");
+    }
 
     public ActivityResponse trackActivity(ActivityRequest request) {
 
 
-        boolean isValidUser = userValidationService.validateUser(request.getUserId());
+        boolean isValidUser = validateTimer.record(() -> userValidationCache.validateUser(request.getUserId()));
         if (!isValidUser) {
             throw new RuntimeException("Invalid user: "+request.getUserId());
         }
+        String traceId = newTraceId();
         Activity activity = Activity.builder()
                 .userId(request.getUserId())
                 .activityType(request.getActivityType())
@@ -44,22 +82,134 @@ public class ActivityService {
                 .caloriesBurned(request.getCaloriesBurned())
                 .startTime(request.getStartTime())
                 .additionalMetrics(request.getAdditionalMetrics())
+                // Published to RabbitMQ for AI by OutboxRelay
+                .outbox(Outbox.pending(Lane.INTERACTIVE, traceId))
+                .build();
+
+        Activity savedActivity = saveTimer.record(() -> activityRepository.save(activity));
+        log.info("Tracked activity {} for user {} (trace {})", savedActivity.getId(), request.getUserId(), traceId);
+        return mapToActivityResponse(savedActivity);
+    }
+
+    /**
+     * Validates the user once and inserts all valid activities with one unordered insertMany.
+     * Activities are published on the bulk lane by OutboxRelay, in confirmed batches.
+     */
+    public BatchActivityResponse trackActivities(String userId, List<ActivityRequest> requests) {
+
+        if (requests == null || requests.isEmpty()) {
+            throw new RuntimeException("No activities in batch");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new RuntimeException("Batch exceeds "+maxBatchSize+" activities");
+        }
+        if (!isValidUser(userId)) {
+            throw new RuntimeException("Invalid user: "+userId);
+        }
+
+        BatchItemResult[] results = new BatchItemResult[requests.size()];
+        List<Activity> activities = new ArrayList<>(requests.size());
+        List<Integer> positions = new ArrayList<>(requests.size());
+        LocalDateTime now = LocalDateTime.now();
+        // One trace for the whole request
+        String traceId = newTraceId();
+        for (int i = 0; i < requests.size(); i++) {
+            ActivityRequest request = requests.get(i);
+            String error = validate(request);
+            if (error != null) {
+                results[i] = BatchItemResult.rejected(i, error);
+                continue;
+            }
+            activities.add(toBulkActivity(userId, request, now, traceId));
+            positions.add(i);
+        }
+
+        Map<Integer, String> failures = insertAll(activities);
+        for (int i = 0; i < activities.size(); i++) {
+            int position = positions.get(i);
+            String failure = failures.get(i);
+            results[position] = failure == null
+                    ? BatchItemResult.created(position, activities.get(i).getId())
+                    : BatchItemResult.rejected(position, failure);
+        }
+
+        int created = activities.size() - failures.size();
+        log.info("Tracked batch of {} activities for user {}, {} created (trace {})", requests.size(), userId, created, traceId);
+        return new BatchActivityResponse(created, requests.size() - created, List.of(results));
+    }
+
+    // Ids and timestamps are set here because bulk inserts do not write them back
+    Activity toBulkActivity(String userId, ActivityRequest request, LocalDateTime now, String traceId) {
+        return Activity.builder()
+                .id(new ObjectId().toHexString())
+                .userId(userId)
+                .activityType(request.getActivityType())
+                .duration(request.getDuration())
+                .caloriesBurned(request.getCaloriesBurned())
+                .startTime(request.getStartTime())
+                .additionalMetrics(request.getAdditionalMetrics())
+                .createdAt(now)
+                .updatedAt(now)
+                .outbox(Outbox.pending(Lane.BULK, traceId))
                 .build();
+    }
 
-        Activity savedActivity = activityRepository.save(activity);
+    // Sent as x-trace-id with every activity the request publishes
+    static String newTraceId() {
+        return UUID.randomUUID().toString();
+    }
 
-        //Publish to RabbitMQ for AI
+    /**
+     * Inserts with one unordered insertMany.
+     *
+     * @return error message by position in {@code activities}, for the ones not inserted
+     */
+    Map<Integer, String> insertAll(List<Activity> activities) {
+        Map<Integer, String> failures = new HashMap<>();
+        if (activities.isEmpty()) {
+            return failures;
+        }
         try {
-            rabbitTemplate.convertAndSend(exchange, routingKey, savedActivity);
-        }catch (Exception e) {
-            log.error("Failes to publish activity to RabbitMQ: ",e);
+            saveBatchTimer.record(() -> mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Activity.class)
+                    .insert(activities)
+                    .execute());
+        } catch (BulkOperationException e) {
+            // Unordered: everything not listed in the errors was inserted
+            e.getErrors().forEach(error -> failures.put(error.getIndex(), error.getMessage()));
         }
-        return mapToActivityResponse(savedActivity);
+        return failures;
+    }
+
+    boolean isValidUser(String userId) {
+        return validateTimer.record(() -> userValidationCache.validateUser(userId));
+    }
+
+    String validate(ActivityRequest request) {
+        if (request == null) {
+            return "Activity is empty";
+        }
+        if (request.getActivityType() == null) {
+            return "activityType is required";
+        }
+        if (request.getDuration() == null || request.getDuration() < 0) {
+            return "duration must be zero or more";
+        }
+        return null;
+    }
+
+    // Counterpart of ai-service's ai.pipeline.stage timers for the stages before the queue
+    static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("activity.pipeline.stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
     }
 
     private ActivityResponse mapToActivityResponse(Activity activity) {
 
         ActivityResponse activityResponse = new ActivityResponse();
+        activityResponse.setId(activity.getId());
         activityResponse.setUserId(activity.getUserId());
         activityResponse.setActivityType(activity.getActivityType());
         activityResponse.setDuration(activity.getDuration());
@@ -80,6 +230,88 @@ public class ActivityService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Keyset page of summaries, newest start time first, optionally limited to a type and a
+     * [from, to) start time range. Filter and sort use the userId+startTime index.
+     */
+    public CursorPage<ActivitySummary> getUserActivitySummaries(String userId, ActivityType activityType,
+                                                                LocalDateTime from, LocalDateTime to,
+                                                                String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Criteria criteria = filter(userId, activityType, from, to);
+        if (cursor != null && !cursor.isBlank()) {
+            CursorPosition position = decodeCursor(cursor);
+            if (position.startTime() == null) {
+                // Activities without a start time sort last
+                criteria = criteria.and("_id").lt(position.id()).andOperator(Criteria.where("startTime").is(null));
+            } else {
+                criteria = criteria.orOperator(
+                        Criteria.where("startTime").lt(position.startTime()),
+                        Criteria.where("startTime").is(position.startTime()).and("_id").lt(position.id()),
+                        Criteria.where("startTime").is(null));
+            }
+        }
+
+        Query query = new Query(criteria).with(NEWEST_FIRST).limit(pageSize + 1);
+        query.fields().include("activityType", "duration", "caloriesBurned", "startTime");
+        List<ActivitySummary> summaries = mongoTemplate.find(query, ActivitySummary.class, "activities");
+
+        if (summaries.size() <= pageSize) {
+            return new CursorPage<>(summaries, null);
+        }
+        List<ActivitySummary> page = summaries.subList(0, pageSize);
+        ActivitySummary last = page.get(pageSize - 1);
+        return new CursorPage<>(page, encodeCursor(last.getStartTime(), last.getId()));
+    }
+
+    /**
+     * Streams a user's activities from a server-side cursor, with the same filters and order as
+     * the summaries; the caller must close the stream.
+     */
+    public Stream<ActivityResponse> streamUserActivities(String userId, ActivityType activityType,
+                                                         LocalDateTime from, LocalDateTime to) {
+        Query query = new Query(filter(userId, activityType, from, to)).with(NEWEST_FIRST).cursorBatchSize(200);
+        query.fields().exclude("outbox");
+        return mongoTemplate.stream(query, Activity.class).map(this::mapToActivityResponse);
+    }
+
+    private Criteria filter(String userId, ActivityType activityType, LocalDateTime from, LocalDateTime to) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (activityType != null) {
+            criteria = criteria.and("activityType").is(activityType);
+        }
+        if (from != null && to != null) {
+            criteria = criteria.and("startTime").gte(from).lt(to);
+        } else if (from != null) {
+            criteria = criteria.and("startTime").gte(from);
+        } else if (to != null) {
+            criteria = criteria.and("startTime").lt(to);
+        }
+        return criteria;
+    }
+
+    private String encodeCursor(LocalDateTime startTime, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(((startTime == null ? "" : startTime.toString()) + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CursorPosition decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (position.length != 2 || !ObjectId.isValid(position[1])) {
+                throw new InvalidCursorException(cursor);
+            }
+            LocalDateTime startTime = position[0].isEmpty() ? null : LocalDateTime.parse(position[0]);
+            return new CursorPosition(startTime, new ObjectId(position[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    // A null start time is the position of an activity without one
+    private record CursorPosition(LocalDateTime startTime, ObjectId id) {
+    }
+
     public ActivityResponse getActivityById(String activityId) {
         return activityRepository.findById(activityId)
                 .map(this::mapToActivityResponse)
@@ -0,0 +1,248 @@
+package com.springboot.activityservice.service;
+
+import com.springboot.activityservice.model.Activity;
+import com.springboot.activityservice.model.Lane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains activity outbox entries to RabbitMQ. Each batch is claimed first, so concurrent
+ * instances do not publish the same entries, then published with publisher confirms; confirmed
+ * entries are removed and the rest are retried after a delay. A relay that dies mid-batch leaves
+ * its claim to expire after the lease timeout. Delivery is at least once; ai-service suppresses
+ * duplicates by activity id. Due INTERACTIVE entries are claimed before BULK ones, so an import
+ * backlog does not hold back activities a user just tracked.
+ * <p>
+ * A tick relays at most {@code max-batches-per-tick} batches so it does not hold Spring's shared
+ * scheduler thread through a long backlog. Outbox depth and lag are counted on the tick, at most
+ * once per {@code stats-interval}, and served from memory to the gauges and the importer.
+ */
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    private static final Criteria PENDING = Criteria.where("outbox").exists(true);
+    private static final String DUE_INDEX = "outbox_lane_due_idx";
+    // Replaced by DUE_INDEX, which also leads with the lane
+    private static final String OLD_DUE_INDEX = "outbox_pending_idx";
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityPublisher activityPublisher;
+    private final int batchSize;
+    private final int maxBatchesPerTick;
+    private final long statsIntervalNanos;
+    private final Duration leaseTimeout;
+    private final Duration confirmTimeout;
+    private final Duration retryDelay;
+    private final Timer publishTimer;
+    private final Counter confirmed;
+    private final Counter failed;
+    private volatile boolean indexEnsured;
+    private volatile long pendingCount;
+    // createdAt of the oldest pending entry, null when the outbox is empty
+    private volatile LocalDateTime oldestPendingAt;
+    private long statsRefreshedAt;
+    private boolean statsLoaded;
+
+    public OutboxRelay(MongoTemplate mongoTemplate,
+                       ActivityPublisher activityPublisher,
+                       MeterRegistry meterRegistry,
+                       @Value("${activity.outbox.batch-size:100}") int batchSize,
+                       @Value("${activity.outbox.max-batches-per-tick:10}") int maxBatchesPerTick,
+                       @Value("${activity.outbox.stats-interval:PT1S}") Duration statsInterval,
+                       @Value("${activity.outbox.lease-timeout:PT30S}") Duration leaseTimeout,
+                       @Value("${activity.outbox.confirm-timeout:PT10S}") Duration confirmTimeout,
+                       @Value("${activity.outbox.retry-delay:PT5S}") Duration retryDelay) {
+        this.mongoTemplate = mongoTemplate;
+        this.activityPublisher = activityPublisher;
+        this.batchSize = batchSize;
+        this.maxBatchesPerTick = maxBatchesPerTick;
+        this.statsIntervalNanos = statsInterval.toNanos();
+        this.leaseTimeout = leaseTimeout;
+        this.confirmTimeout = confirmTimeout;
+        this.retryDelay = retryDelay;
+        // From the outbox write to the broker's confirm
+        this.publishTimer = ActivityService.stageTimer(meterRegistry, "publish");
+        this.confirmed = Counter.builder("activity.outbox.relayed").tag("outcome", "confirmed").register(meterRegistry);
+        this.failed = Counter.builder("activity.outbox.relayed").tag("outcome", "failed").register(meterRegistry);
+        Gauge.builder("activity.outbox.depth", this, OutboxRelay::depth).register(meterRegistry);
+        Gauge.builder("activity.outbox.lag", this, relay -> relay.oldestPendingAge().toMillis() / 1000.0)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${activity.outbox.poll-interval:PT0.1S}")
+    public void relay() {
+        try {
+            ensureIndex();
+            // Keep going while batches come back full, so a backlog drains without poll delays
+            int relayed;
+            int batches = 0;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize && ++batches < maxBatchesPerTick);
+        } catch (RuntimeException e) {
+            log.error("Outbox relay failed", e);
+        }
+        try {
+            refreshStats();
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh outbox depth", e);
+        }
+    }
+
+    /**
+     * @return pending entries as of the last refresh on the relay tick
+     */
+    public long depth() {
+        return pendingCount;
+    }
+
+    /**
+     * @return age of the oldest entry pending at the last refresh, which keeps growing until the
+     * next one
+     */
+    public Duration oldestPendingAge() {
+        LocalDateTime oldest = oldestPendingAt;
+        return oldest == null ? Duration.ZERO : Duration.between(oldest, LocalDateTime.now());
+    }
+
+    // Only the scheduler thread calls this, so the refresh bookkeeping needs no locking
+    private void refreshStats() {
+        long now = System.nanoTime();
+        if (statsLoaded && now - statsRefreshedAt < statsIntervalNanos) {
+            return;
+        }
+        pendingCount = mongoTemplate.count(new Query(PENDING), Activity.class);
+        Query oldest = new Query(PENDING).with(Sort.by("outbox.createdAt")).limit(1);
+        oldest.fields().include("outbox.createdAt");
+        Activity activity = mongoTemplate.findOne(oldest, Activity.class);
+        oldestPendingAt = activity == null ? null : activity.getOutbox().getCreatedAt();
+        statsRefreshedAt = now;
+        statsLoaded = true;
+    }
+
+    private int relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> ids = dueIds(now);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String claim = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids).and("outbox.nextAttemptAt").lte(now)),
+                new Update().set("outbox.nextAttemptAt", now.plus(leaseTimeout)).set("outbox.claim", claim),
+                Activity.class);
+        List<Activity> claimed = mongoTemplate.find(Query.query(Criteria.where("outbox.claim").is(claim)), Activity.class);
+
+        List<CorrelationData> confirms = new ArrayList<>(claimed.size());
+        try {
+            for (Activity activity : claimed) {
+                CorrelationData correlationData = new CorrelationData(activity.getId());
+                activityPublisher.publish(activity, activity.getOutbox().getLane(), correlationData);
+                confirms.add(correlationData);
+            }
+        } catch (AmqpException e) {
+            log.warn("Failed to publish outbox entries, {} of {} sent", confirms.size(), claimed.size(), e);
+        }
+
+        List<String> acked = new ArrayList<>();
+        List<String> retry = new ArrayList<>();
+        long deadline = System.nanoTime() + confirmTimeout.toNanos();
+        for (int i = 0; i < claimed.size(); i++) {
+            Activity activity = claimed.get(i);
+            if (i < confirms.size() && isConfirmed(confirms.get(i), deadline)) {
+                acked.add(activity.getId());
+                publishTimer.record(Duration.between(activity.getOutbox().getCreatedAt(), LocalDateTime.now()));
+            } else {
+                retry.add(activity.getId());
+            }
+        }
+
+        if (!acked.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(acked).and("outbox.claim").is(claim)),
+                    new Update().unset("outbox"), Activity.class);
+            confirmed.increment(acked.size());
+        }
+        if (!retry.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(retry).and("outbox.claim").is(claim)),
+                    new Update().inc("outbox.attempts", 1)
+                            .set("outbox.nextAttemptAt", LocalDateTime.now().plus(retryDelay))
+                            .unset("outbox.claim"),
+                    Activity.class);
+            failed.increment(retry.size());
+            log.warn("{} outbox entries not confirmed, retrying in {}", retry.size(), retryDelay);
+        }
+        return ids.size();
+    }
+
+    // Fills the batch lane by lane in Lane order, oldest due first within a lane
+    private List<String> dueIds(LocalDateTime now) {
+        List<String> ids = new ArrayList<>(batchSize);
+        for (Lane lane : Lane.values()) {
+            if (ids.size() == batchSize) {
+                break;
+            }
+            Query due = Query.query(Criteria.where("outbox.lane").is(lane).and("outbox.nextAttemptAt").lte(now))
+                    .with(Sort.by("outbox.nextAttemptAt"))
+                    .limit(batchSize - ids.size());
+            due.fields().include("_id");
+            mongoTemplate.find(due, Activity.class).forEach(activity -> ids.add(activity.getId()));
+        }
+        return ids;
+    }
+
+    // Acked and not returned as unroutable, within the batch's confirm deadline
+    private boolean isConfirmed(CorrelationData correlationData, long deadline) {
+        try {
+            CorrelationData.Confirm confirm = correlationData.getFuture()
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return confirm.isAck() && correlationData.getReturned() == null;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void ensureIndex() {
+        if (!indexEnsured) {
+            IndexOperations indexOps = mongoTemplate.indexOps(Activity.class);
+            indexOps.ensureIndex(new Index()
+                    .on("outbox.lane", Sort.Direction.ASC)
+                    .on("outbox.nextAttemptAt", Sort.Direction.ASC)
+                    .named(DUE_INDEX)
+                    .partial(PartialIndexFilter.of(PENDING)));
+            if (indexOps.getIndexInfo().stream().anyMatch(index -> OLD_DUE_INDEX.equals(index.getName()))) {
+                indexOps.dropIndex(OLD_DUE_INDEX);
+            }
+            indexEnsured = true;
+        }
+    }
+}
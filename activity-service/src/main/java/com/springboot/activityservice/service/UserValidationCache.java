@@ -0,0 +1,114 @@
+package com.springboot.activityservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches user-service validation results so ingestion does not make an HTTP call per activity.
+ * Valid users are cached for the TTL and invalid ones for a shorter negative TTL. Concurrent
+ * misses for one user share a single lookup. Within the stale-while-revalidate window after the
+ * TTL, a valid user is answered from the cache while a refresh runs in the background; a failed
+ * refresh keeps the old entry, so a user-service outage shorter than the window does not stall
+ * ingestion.
+ */
+@Service
+@Slf4j
+public class UserValidationCache {
+
+    private final UserValidationService userValidationService;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long staleNanos;
+    private final Duration timeout;
+    private final Map<String, Entry> entries;
+    private final Map<String, Mono<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter staleHits;
+    private final Counter misses;
+
+    public UserValidationCache(UserValidationService userValidationService,
+                               MeterRegistry meterRegistry,
+                               @Value("${activity.user-validation.ttl:PT10M}") Duration ttl,
+                               @Value("${activity.user-validation.negative-ttl:PT30S}") Duration negativeTtl,
+                               @Value("${activity.user-validation.stale-while-revalidate:PT1H}") Duration staleWhileRevalidate,
+                               @Value("${activity.user-validation.timeout:PT2S}") Duration timeout,
+                               @Value("${activity.user-validation.max-entries:100000}") int maxEntries) {
+        this.userValidationService = userValidationService;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.staleNanos = staleWhileRevalidate.toNanos();
+        this.timeout = timeout;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.hits = result(meterRegistry, "hit");
+        this.negativeHits = result(meterRegistry, "negative_hit");
+        this.staleHits = result(meterRegistry, "stale_hit");
+        this.misses = result(meterRegistry, "miss");
+        Gauge.builder("activity.user-validation.cache.size", this, UserValidationCache::size).register(meterRegistry);
+    }
+
+    public boolean validateUser(String userId) {
+        Entry entry = get(userId);
+        if (entry != null) {
+            long age = System.nanoTime() - entry.loadedAt();
+            if (age <= (entry.valid() ? ttlNanos : negativeTtlNanos)) {
+                (entry.valid() ? hits : negativeHits).increment();
+                return entry.valid();
+            }
+            if (entry.valid() && age <= ttlNanos + staleNanos) {
+                staleHits.increment();
+                load(userId).subscribe(null, e -> log.warn("Failed to revalidate user {}", userId, e));
+                return true;
+            }
+        }
+        misses.increment();
+        return Boolean.TRUE.equals(load(userId).block());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Concurrent lookups for one user share this Mono until it completes
+    private Mono<Boolean> load(String userId) {
+        return inFlight.computeIfAbsent(userId, id -> userValidationService.validateUser(id)
+                .timeout(timeout)
+                .doOnNext(valid -> put(id, new Entry(valid, System.nanoTime())))
+                .doFinally(signal -> inFlight.remove(id))
+                .cache());
+    }
+
+    private synchronized Entry get(String userId) {
+        return entries.get(userId);
+    }
+
+    private synchronized void put(String userId, Entry entry) {
+        entries.put(userId, entry);
+    }
+
+    private static Counter result(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("activity.user-validation.cache")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Entry(boolean valid, long loadedAt) {
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
 @Service
 @RequiredArgsConstructor
@@ -12,21 +13,23 @@ public class UserValidationService {
 
     private final WebClient userServiceWebClient;
 
-    public boolean validateUser(String userId) {
+    /**
+     * Emits false for unknown users and malformed ids; other failures are errors, so callers can
+     * tell "invalid" from "user-service unavailable".
+     */
+    public Mono<Boolean> validateUser(String userId) {
 
-        try {
-            return Boolean.TRUE.equals(userServiceWebClient.get()
-                    .uri("/api/users/{userId}/validate", userId)
-                    .retrieve()
-                    .bodyToMono(Boolean.class)
-                    .block());
-        } catch (WebClientResponseException e){
-            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
-                throw new RuntimeException("User not found: "+userId);
-            } else if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
-                throw new RuntimeException("Invalid Request: "+userId);
-            }
-        }
-        return false;
+        return userServiceWebClient.get()
+                .uri("/api/users/{userId}/validate", userId)
+                .retrieve()
+                .bodyToMono(Boolean.class)
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false)
+                .onErrorResume(WebClientResponseException.class, e -> {
+                    if (e.getStatusCode() == HttpStatus.NOT_FOUND || e.getStatusCode() == HttpStatus.BAD_REQUEST) {
+                        return Mono.just(false);
+                    }
+                    return Mono.error(e);
+                });
     }
 }
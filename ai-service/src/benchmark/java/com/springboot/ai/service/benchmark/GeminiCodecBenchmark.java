@@ -0,0 +1,116 @@
+package com.springboot.ai.service.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.ai.service.codec.GeminiCodec;
+import com.springboot.ai.service.dto.AiAnalysis;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original tree-based response handling in ActivityAIService with GeminiCodec.
+ * Run with the gc profiler (the benchmark profile adds it) to see allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeminiCodecBenchmark {
+
+    private static final String INNER_JSON = """
+            {
+              "analysis": {
+                "overall": "Solid steady-state run with consistent effort throughout the session.",
+                "pace": "Average pace of 5:45 min/km is appropriate for an aerobic base run.",
+                "heartRate": "Average heart rate of 148 bpm sits in zone 2-3.",
+                "caloriesBurned": "Roughly 320 kcal, in line with duration and intensity."
+              },
+              "improvements": [
+                {"area": "Cadence", "recommendation": "Aim for 170-175 steps per minute to reduce ground contact time."},
+                {"area": "Recovery", "recommendation": "Add a 10 minute cool-down walk after the run."}
+              ],
+              "suggestions": [
+                {"workout": "Tempo Run", "description": "20 minutes at comfortably hard effort after a 10 minute warm-up."},
+                {"workout": "Long Run", "description": "60 minutes at easy conversational pace."}
+              ],
+              "safety": ["Warm up for 5-10 minutes", "Stay hydrated", "Stop if you feel chest pain or dizziness"]
+            }""";
+
+    private String response;
+    private String prompt;
+    private GeminiCodec codec;
+    private ObjectMapper sharedMapper;
+
+    @Setup
+    public void setup() throws Exception {
+        sharedMapper = new ObjectMapper();
+        String fenced = "```json\n" + INNER_JSON + "\n```";
+        response = sharedMapper.writeValueAsString(Map.of(
+                "candidates", List.of(Map.of(
+                        "content", Map.of("parts", List.of(Map.of("text", fenced)), "role", "model"),
+                        "finishReason", "STOP")),
+                "usageMetadata", Map.of("promptTokenCount", 412, "candidatesTokenCount", 356),
+                "modelVersion", "gemini-2.0-flash"));
+        prompt = "Analyze this fitness activity and provide detailed recommendations in the following format "
+                + INNER_JSON + "\nActivity Type: RUNNING\nDuration: 30 minutes\nCalories Burned: 320";
+        codec = new GeminiCodec(sharedMapper);
+    }
+
+    @Benchmark
+    public void decodeLegacy(Blackhole blackhole) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode rootNode = mapper.readTree(response);
+        String jsonContent = rootNode.path("candidates").get(0)
+                .path("content").path("parts").get(0)
+                .path("text").asText()
+                .replaceAll("```json\\n", "")
+                .replaceAll("\\n```", "")
+                .trim();
+        JsonNode analysisJson = mapper.readTree(jsonContent);
+        JsonNode analysisNode = analysisJson.path("analysis");
+        blackhole.consume(analysisNode.path("overall").asText());
+        List<String> improvements = new ArrayList<>();
+        analysisJson.path("improvements").forEach(node -> improvements.add(String.format("%s: %s",
+                node.path("area").asText(), node.path("recommendation").asText())));
+        List<String> suggestions = new ArrayList<>();
+        analysisJson.path("suggestions").forEach(node -> suggestions.add(String.format("%s (%s)",
+                node.path("description").asText(), node.path("workout").asText())));
+        blackhole.consume(improvements);
+        blackhole.consume(suggestions);
+    }
+
+    @Benchmark
+    public void decodeCodec(Blackhole blackhole) throws Exception {
+        AiAnalysis analysis = codec.decodeAnalysis(response);
+        blackhole.consume(analysis.getAnalysis().getOverall());
+        List<String> improvements = new ArrayList<>(analysis.getImprovements().size());
+        analysis.getImprovements().forEach(improvement -> improvements.add(improvement.toDisplayString()));
+        List<String> suggestions = new ArrayList<>(analysis.getSuggestions().size());
+        analysis.getSuggestions().forEach(suggestion -> suggestions.add(suggestion.toDisplayString()));
+        blackhole.consume(improvements);
+        blackhole.consume(suggestions);
+    }
+
+    @Benchmark
+    public byte[] encodeRequestLegacy() throws Exception {
+        Map<String, Object> requestBody = Map.of(
+                "contents", new Object[] {
+                        Map.of("parts", new Object[] {
+                                Map.of("text", prompt)
+                        })
+                });
+        return sharedMapper.writeValueAsBytes(requestBody);
+    }
+
+    @Benchmark
+    public byte[] encodeRequestCodec() {
+        return codec.encodeRequest(prompt);
+    }
+}
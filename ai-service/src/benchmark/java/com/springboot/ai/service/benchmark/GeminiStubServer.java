@@ -0,0 +1,244 @@
+package com.springboot.ai.service.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the Gemini generateContent and streamGenerateContent endpoints, so
+ * ai-service can be load tested without a network or quota. Replies follow the prompt: batch
+ * prompts get one element per "Activity Id", structured-output requests get bare JSON and text
+ * requests get fenced JSON. Configured with system properties:
+ * <pre>
+ *   stub.port              8089
+ *   stub.latency.median-ms 800   median of a log-normal latency distribution
+ *   stub.latency.sigma     0.5   0 gives a fixed latency
+ *   stub.latency.per-item-ms 150 extra latency per activity in a batch
+ *   stub.error-rate        0.0   share of 500 replies
+ *   stub.throttle-rate     0.0   share of 429 replies
+ *   stub.malformed-rate    0.0   share of replies whose text is not valid JSON
+ * </pre>
+ * Run with {@code mvn -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.springboot.ai.service.benchmark.GeminiStubServer}, and start ai-service
+ * with {@code GEMINI_API_URL=http://localhost:8089/v1beta/models/stub:generateContent?key=}.
+ */
+public class GeminiStubServer {
+
+    private static final Pattern ACTIVITY_ID = Pattern.compile("Activity Id: ([^,\\s]+)");
+    private static final Pattern ACTIVITY_TYPE = Pattern.compile("(?:Activity )?Type: (\\w+)");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final double medianMillis;
+    private final double sigma;
+    private final double perItemMillis;
+    private final double errorRate;
+    private final double throttleRate;
+    private final double malformedRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+    private HttpServer server;
+
+    public GeminiStubServer(double medianMillis, double sigma, double perItemMillis,
+                            double errorRate, double throttleRate, double malformedRate) {
+        this.medianMillis = medianMillis;
+        this.sigma = sigma;
+        this.perItemMillis = perItemMillis;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.malformedRate = malformedRate;
+    }
+
+    public static void main(String[] args) throws Exception {
+        GeminiStubServer stub = new GeminiStubServer(
+                Double.parseDouble(System.getProperty("stub.latency.median-ms", "800")),
+                Double.parseDouble(System.getProperty("stub.latency.sigma", "0.5")),
+                Double.parseDouble(System.getProperty("stub.latency.per-item-ms", "150")),
+                Double.parseDouble(System.getProperty("stub.error-rate", "0")),
+                Double.parseDouble(System.getProperty("stub.throttle-rate", "0")),
+                Double.parseDouble(System.getProperty("stub.malformed-rate", "0")));
+        int port = Integer.getInteger("stub.port", 8089);
+        stub.start(port);
+        System.out.printf("Gemini stub listening on http://localhost:%d/v1beta/models/stub:generateContent?key=%n", port);
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println(stub.summary());
+        }
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 512);
+        // Requests mostly sleep, so a thread each keeps the stub from limiting concurrency
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public String summary() {
+        return String.format("requests=%d errors=%d throttled=%d malformed=%d",
+                requests.get(), errors.get(), throttled.get(), malformed.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            boolean streaming = path.endsWith(":streamGenerateContent");
+            if (!"POST".equals(exchange.getRequestMethod())
+                    || !(streaming || path.endsWith(":generateContent"))) {
+                send(exchange, 404, "application/json", "{\"error\":{\"code\":404,\"status\":\"NOT_FOUND\"}}");
+                return;
+            }
+            requests.incrementAndGet();
+            JsonNode request = mapper.readTree(exchange.getRequestBody());
+            String prompt = request.path("contents").path(0).path("parts").path(0).path("text").asText("");
+            boolean structured = request.has("generationConfig");
+            List<String> batchIds = batchIds(prompt);
+
+            sleep(latencyMillis(Math.max(1, batchIds.size())));
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < throttleRate) {
+                throttled.incrementAndGet();
+                send(exchange, 429, "application/json",
+                        "{\"error\":{\"code\":429,\"message\":\"Resource has been exhausted\",\"status\":\"RESOURCE_EXHAUSTED\"}}");
+                return;
+            }
+            if (roll < throttleRate + errorRate) {
+                errors.incrementAndGet();
+                send(exchange, 500, "application/json",
+                        "{\"error\":{\"code\":500,\"message\":\"Internal error\",\"status\":\"INTERNAL\"}}");
+                return;
+            }
+
+            String text;
+            if (roll < throttleRate + errorRate + malformedRate) {
+                malformed.incrementAndGet();
+                text = "I'm sorry, here is the analysis: {\"analysis\": {\"overall\": \"Good session";
+            } else {
+                JsonNode reply = batchIds.isEmpty() ? analysis(activityType(prompt), null) : batch(batchIds);
+                text = structured
+                        ? mapper.writeValueAsString(reply)
+                        : "```json\n" + mapper.writerWithDefaultPrettyPrinter().writeValueAsString(reply) + "\n```";
+            }
+
+            if (streaming) {
+                sendStream(exchange, text);
+            } else {
+                send(exchange, 200, "application/json", mapper.writeValueAsString(response(text, prompt)));
+            }
+        }
+    }
+
+    private List<String> batchIds(String prompt) {
+        List<String> ids = new ArrayList<>();
+        Matcher matcher = ACTIVITY_ID.matcher(prompt);
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+
+    private String activityType(String prompt) {
+        Matcher matcher = ACTIVITY_TYPE.matcher(prompt);
+        return matcher.find() ? matcher.group(1) : "OTHER";
+    }
+
+    private ArrayNode batch(List<String> ids) {
+        ArrayNode array = mapper.createArrayNode();
+        ids.forEach(id -> array.add(analysis("OTHER", id)));
+        return array;
+    }
+
+    private ObjectNode analysis(String activityType, String activityId) {
+        ObjectNode root = mapper.createObjectNode();
+        if (activityId != null) {
+            root.put("activityId", activityId);
+        }
+        String name = activityType.toLowerCase().replace('_', ' ');
+        ObjectNode analysis = root.putObject("analysis");
+        analysis.put("overall", "Solid " + name + " session with a consistent effort from start to finish.");
+        analysis.put("pace", "Pace was steady and suits an aerobic base session.");
+        analysis.put("heartRate", "Heart rate stayed mostly in zone 2-3, a sustainable effort.");
+        analysis.put("caloriesBurned", "Energy expenditure is in line with the duration and intensity.");
+        ArrayNode improvements = root.putArray("improvements");
+        improvements.addObject().put("area", "Consistency")
+                .put("recommendation", "Keep 3-5 sessions a week and raise volume by no more than 10% per week.");
+        improvements.addObject().put("area", "Recovery")
+                .put("recommendation", "Finish with a 5-10 minute cool-down at an easy effort.");
+        ArrayNode suggestions = root.putArray("suggestions");
+        suggestions.addObject().put("workout", "Intervals")
+                .put("description", "5 x 3 minutes at a hard effort with 2 minutes easy between.");
+        suggestions.addObject().put("workout", "Long Easy Session")
+                .put("description", "60 minutes at a conversational effort.");
+        root.putArray("safety").add("Warm up for 5-10 minutes").add("Stay hydrated")
+                .add("Stop if you feel chest pain or dizziness");
+        return root;
+    }
+
+    private ObjectNode response(String text, String prompt) {
+        ObjectNode root = mapper.createObjectNode();
+        ObjectNode candidate = root.putArray("candidates").addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.putArray("parts").addObject().put("text", text);
+        content.put("role", "model");
+        candidate.put("finishReason", "STOP");
+        root.putObject("usageMetadata")
+                .put("promptTokenCount", prompt.length() / 4)
+                .put("candidatesTokenCount", text.length() / 4);
+        root.put("modelVersion", "stub");
+        return root;
+    }
+
+    private void sendStream(HttpExchange exchange, String text) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        int chunk = Math.max(1, text.length() / 8);
+        for (int i = 0; i < text.length(); i += chunk) {
+            String part = text.substring(i, Math.min(text.length(), i + chunk));
+            body.write(("data: " + mapper.writeValueAsString(response(part, "")) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            body.flush();
+            sleep(20);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private long latencyMillis(int items) {
+        double base = medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return (long) (base + perItemMillis * (items - 1));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
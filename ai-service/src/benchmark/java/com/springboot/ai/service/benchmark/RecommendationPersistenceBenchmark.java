@@ -0,0 +1,108 @@
+package com.springboot.ai.service.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.springboot.ai.service.model.Recommendation;
+import com.springboot.ai.service.repository.RecommendationRepositoryCustomImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The production write path, upserts keyed by activityId through RecommendationRepositoryCustomImpl,
+ * one at a time versus unordered bulk, against a local MongoDB with the unique activityId index.
+ * bulkUpsertRedelivered writes the same batch twice, as a redelivered message would; plain bulk
+ * inserts are kept as a baseline.
+ * Scores are batches per second, so multiply by batchSize for documents per second.
+ * Override the target with -Dbenchmark.mongo.uri=mongodb://host:27017 (passed to the forked JVM via -jvmArgs).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecommendationPersistenceBenchmark {
+
+    @Param({"10", "100"})
+    public int batchSize;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private RecommendationRepositoryCustomImpl repository;
+
+    @Setup
+    public void setup() {
+        mongoClient = MongoClients.create(System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27017"));
+        SimpleMongoClientDatabaseFactory databaseFactory =
+                new SimpleMongoClientDatabaseFactory(mongoClient, "fitness_recommendation_benchmark");
+        mongoTemplate = new MongoTemplate(databaseFactory);
+        repository = new RecommendationRepositoryCustomImpl(databaseFactory, mongoTemplate, "ACKNOWLEDGED");
+        mongoTemplate.dropCollection(Recommendation.class);
+        // As created by MongoIndexInitializer; upserts look documents up by activityId
+        mongoTemplate.indexOps(Recommendation.class)
+                .ensureIndex(new Index().on("activityId", Sort.Direction.ASC).unique().named("activityId"));
+        mongoTemplate.indexOps(Recommendation.class).ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("user_created_idx"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoTemplate.dropCollection(Recommendation.class);
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public void singleUpserts() {
+        for (Recommendation recommendation : newBatch()) {
+            repository.upsertByActivityId(recommendation);
+        }
+    }
+
+    @Benchmark
+    public void bulkUpsert() {
+        repository.upsertAllByActivityId(newBatch());
+    }
+
+    @Benchmark
+    public void bulkUpsertRedelivered() {
+        List<Recommendation> batch = newBatch();
+        repository.upsertAllByActivityId(batch);
+        repository.upsertAllByActivityId(batch);
+    }
+
+    @Benchmark
+    public void bulkInsertBaseline() {
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class)
+                .insert(newBatch())
+                .execute();
+    }
+
+    private List<Recommendation> newBatch() {
+        List<Recommendation> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(Recommendation.builder()
+                    .activityId("activity-" + System.nanoTime() + "-" + i)
+                    .userId("user-" + (i % 10))
+                    .activityType("RUNNING")
+                    .recommendation("Overall: Solid steady-state run.\n\nPace: Appropriate for an aerobic base run.")
+                    .improvements(List.of("Cadence: Aim for 170-175 steps per minute"))
+                    .suggestions(List.of("20 minutes at comfortably hard effort (Tempo Run)"))
+                    .safety(List.of("Warm up for 5-10 minutes", "Stay hydrated"))
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,48 @@
+package com.springboot.ai.service.benchmark;
+
+import com.springboot.ai.service.model.Activity;
+import com.springboot.ai.service.rules.RecommendationRuleEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a rule-based recommendation, the fast path and fallback that stands in for a
+ * Gemini call. Expect single-digit microseconds per activity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleEngineBenchmark {
+
+    @Param({"RUNNING", "CYCLING", "WEIGHT_TRAINING", "OTHER"})
+    public String activityType;
+
+    private RecommendationRuleEngine ruleEngine;
+    private Activity activity;
+
+    @Setup
+    public void setup() {
+        ruleEngine = new RecommendationRuleEngine();
+        activity = new Activity();
+        activity.setId("bench-activity");
+        activity.setUserId("bench-user");
+        activity.setActivityType(activityType);
+        activity.setDuration(45);
+        activity.setCaloriesBurned(480);
+        activity.setAdditionalMetrics(Map.of(
+                "distance", 8.2,
+                "averageHeartRate", 152,
+                "maxHeartRate", 178,
+                "cadence", 158));
+    }
+
+    @Benchmark
+    public Object evaluate() {
+        return ruleEngine.evaluate(activity);
+    }
+}
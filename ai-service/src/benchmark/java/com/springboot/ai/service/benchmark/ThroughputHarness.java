@@ -0,0 +1,142 @@
+package com.springboot.ai.service.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test of a running ai-service: publishes synthetic activities to activity.queue
+ * and watches the recommendations collection until each one has a recommendation. Reports
+ * throughput, end-to-end latency percentiles (publish to stored recommendation) and how many
+ * recommendations came from the rule engine instead of Gemini. Point ai-service at
+ * {@link GeminiStubServer} and a local RabbitMQ and MongoDB. Configured with system properties:
+ * <pre>
+ *   harness.count     1000
+ *   harness.rate      50       activities published per second, 0 for as fast as possible
+ *   harness.users     20
+ *   harness.routing-key activity.tracking   activity.bulk for the bulk lane
+ *   harness.timeout-s 600
+ *   harness.rabbit-host localhost, harness.mongo-uri mongodb://localhost:27017/fitness_recommendation_db
+ * </pre>
+ * Run with {@code mvn -Pbenchmark test-compile exec:java
+ * -Dexec.mainClass=com.springboot.ai.service.benchmark.ThroughputHarness -Dharness.count=5000}.
+ */
+public class ThroughputHarness {
+
+    private static final String[] TYPES = {"RUNNING", "WALKING", "CYCLING", "SWIMMING", "WEIGHT_TRAINING", "YOGA", "HIIT"};
+
+    public static void main(String[] args) throws Exception {
+        int count = Integer.getInteger("harness.count", 1000);
+        int rate = Integer.getInteger("harness.rate", 50);
+        int users = Integer.getInteger("harness.users", 20);
+        String routingKey = System.getProperty("harness.routing-key", "activity.tracking");
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("harness.timeout-s", 600));
+        String mongoUri = System.getProperty("harness.mongo-uri", "mongodb://localhost:27017/fitness_recommendation_db");
+
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(
+                System.getProperty("harness.rabbit-host", "localhost"));
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(new Jackson2JsonMessageConverter());
+
+        try (MongoClient mongoClient = MongoClients.create(mongoUri)) {
+            MongoCollection<Document> recommendations = mongoClient
+                    .getDatabase(mongoUri.substring(mongoUri.lastIndexOf('/') + 1))
+                    .getCollection("recommendations");
+
+            Map<String, Long> pending = new HashMap<>(count * 2);
+            long started = System.nanoTime();
+            long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+            for (int i = 0; i < count; i++) {
+                long due = started + i * intervalNanos;
+                while (System.nanoTime() < due) {
+                    Thread.onSpinWait();
+                }
+                Map<String, Object> activity = activity(i, users);
+                pending.put((String) activity.get("id"), System.currentTimeMillis());
+                rabbitTemplate.convertAndSend("fitness.exchange", routingKey, activity);
+            }
+            double publishSeconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Published %d activities in %.1f s%n", count, publishSeconds);
+
+            List<Long> latencies = new ArrayList<>(count);
+            Map<String, Integer> sources = new LinkedHashMap<>();
+            long lastStoredAt = 0;
+            while (!pending.isEmpty() && System.nanoTime() - started < timeoutNanos) {
+                List<String> ids = pending.keySet().stream().limit(1000).toList();
+                for (Document document : recommendations.find(Filters.in("activityId", ids))
+                        .projection(Projections.include("activityId", "source", "createdAt"))) {
+                    String activityId = document.getString("activityId");
+                    long storedAt = document.getDate("createdAt") != null
+                            ? document.getDate("createdAt").getTime()
+                            : System.currentTimeMillis();
+                    latencies.add(Math.max(0, storedAt - pending.remove(activityId)));
+                    lastStoredAt = Math.max(lastStoredAt, storedAt);
+                    sources.merge(String.valueOf(document.getString("source")), 1, Integer::sum);
+                }
+                Thread.sleep(100);
+            }
+            connectionFactory.destroy();
+            report(count, latencies, sources, pending.size(), started, lastStoredAt);
+        }
+    }
+
+    private static Map<String, Object> activity(int index, int users) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int duration = 15 + random.nextInt(90);
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("distance", Math.round(duration * (0.08 + random.nextDouble() * 0.12) * 10) / 10.0);
+        metrics.put("averageHeartRate", 110 + random.nextInt(60));
+        metrics.put("maxHeartRate", 150 + random.nextInt(40));
+        metrics.put("cadence", 150 + random.nextInt(30));
+
+        Map<String, Object> activity = new HashMap<>();
+        activity.put("id", new ObjectId().toHexString());
+        activity.put("userId", "harness-user-" + (index % users));
+        activity.put("activityType", TYPES[index % TYPES.length]);
+        activity.put("duration", duration);
+        activity.put("caloriesBurned", duration * (5 + random.nextInt(8)));
+        activity.put("startTime", LocalDateTime.now().minusMinutes(duration).toString());
+        activity.put("additionalMetrics", metrics);
+        activity.put("createdAt", LocalDateTime.now().toString());
+        return activity;
+    }
+
+    private static void report(int count, List<Long> latencies, Map<String, Integer> sources, int missing,
+                               long startedNanos, long lastStoredAt) {
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        int completed = sorted.length;
+        long startedAt = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        double seconds = Math.max(1, lastStoredAt - startedAt) / 1000.0;
+        int fallbacks = sources.getOrDefault("rules", 0);
+
+        System.out.printf("Completed %d/%d (%d missing)%n", completed, count, missing);
+        System.out.printf("Throughput: %.1f recommendations/s%n", completed / seconds);
+        if (completed > 0) {
+            System.out.printf("Latency ms: p50=%d p90=%d p99=%d max=%d%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), sorted[completed - 1]);
+            System.out.printf("Fallback rate: %.2f%% (sources %s)%n", 100.0 * fallbacks / completed, sources);
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
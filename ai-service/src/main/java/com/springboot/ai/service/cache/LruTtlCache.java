@@ -0,0 +1,86 @@
+package com.springboot.ai.service.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * LRU map bounded by entry count and, optionally, by total weight, whose entries also expire
+ * after a fixed time to live. All operations are synchronized; the critical sections are a
+ * single map access.
+ */
+public class LruTtlCache<K, V> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToLongFunction<V> weigher;
+    private final Runnable onEviction;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+
+    public LruTtlCache(int maxEntries, Duration ttl, Runnable onEviction) {
+        this(maxEntries, Long.MAX_VALUE, ttl, value -> 0, onEviction);
+    }
+
+    public LruTtlCache(int maxEntries, long maxWeight, Duration ttl, ToLongFunction<V> weigher, Runnable onEviction) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+        this.weigher = weigher;
+        this.onEviction = onEviction;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.storedAt() > ttlNanos) {
+            removeEntry(key);
+            onEviction.run();
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        Entry<V> previous = entries.put(key, new Entry<>(value, weight, System.nanoTime()));
+        if (previous != null) {
+            totalWeight -= previous.weight();
+        }
+        totalWeight += weight;
+
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && eldest.hasNext()) {
+            totalWeight -= eldest.next().weight();
+            eldest.remove();
+            onEviction.run();
+        }
+    }
+
+    public synchronized void remove(K key) {
+        removeEntry(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    private void removeEntry(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight();
+        }
+    }
+
+    private record Entry<V>(V value, long weight, long storedAt) {
+    }
+}
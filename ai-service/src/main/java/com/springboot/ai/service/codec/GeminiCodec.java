@@ -0,0 +1,207 @@
+package com.springboot.ai.service.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.springboot.ai.service.dto.AiAnalysis;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Encodes Gemini generateContent requests and decodes their replies without building
+ * intermediate trees: the envelope is streamed up to candidates[0].content.parts[0].text and
+ * the inner JSON is bound straight to {@link AiAnalysis}.
+ */
+@Component
+public class GeminiCodec {
+
+    private static final SerializedString REQUEST_PREFIX = new SerializedString("{\"contents\":[{\"parts\":[{\"text\":");
+    private static final SerializedString CONTENTS_SUFFIX = new SerializedString("}]}]");
+    private static final SerializedString REQUEST_END = new SerializedString("}");
+    private static final int ENVELOPE_SIZE = 64;
+
+    private final ObjectMapper mapper;
+    private final JsonFactory jsonFactory;
+    private final ObjectReader analysisReader;
+    private final ObjectReader batchReader;
+
+    public GeminiCodec(ObjectMapper objectMapper) {
+        this.mapper = objectMapper.copy()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.jsonFactory = mapper.getFactory();
+        this.analysisReader = mapper.readerFor(AiAnalysis.class);
+        this.batchReader = mapper.readerFor(new TypeReference<List<AiAnalysis>>() {});
+    }
+
+    public byte[] encodeRequest(String prompt) {
+        return encodeRequest(prompt, null);
+    }
+
+    /**
+     * @param generationConfig pre-serialized fragment from {@link #generationConfig}, or null
+     */
+    public byte[] encodeRequest(String prompt, SerializedString generationConfig) {
+        // The envelope never changes, so only the prompt goes through the generator's escaping.
+        // Sized for the prompt plus envelope so the body is usually built in one block.
+        ByteArrayBuilder body = new ByteArrayBuilder(ENVELOPE_SIZE + prompt.length()
+                + (generationConfig == null ? 0 : generationConfig.charLength()));
+        try (JsonGenerator generator = jsonFactory.createGenerator(body)) {
+            generator.writeRaw(REQUEST_PREFIX);
+            generator.writeString(prompt);
+            generator.writeRaw(CONTENTS_SUFFIX);
+            if (generationConfig != null) {
+                generator.writeRaw(generationConfig);
+            }
+            generator.writeRaw(REQUEST_END);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Serializes the generationConfig member that asks for a JSON reply matching the schema,
+     * once, so that requests only append it.
+     */
+    public SerializedString generationConfig(ResponseSchema schema, int maxOutputTokens) {
+        ObjectNode config = mapper.createObjectNode();
+        config.put("responseMimeType", "application/json");
+        config.set("responseSchema", schema == ResponseSchema.BATCH
+                ? arrayOf(analysisSchema(true))
+                : analysisSchema(false));
+        config.put("maxOutputTokens", maxOutputTokens);
+        try {
+            return new SerializedString(",\"generationConfig\":" + mapper.writeValueAsString(config));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public AiAnalysis decodeAnalysis(String response) throws IOException {
+        return decodeAnalysisText(extractText(response));
+    }
+
+    public AiAnalysis decodeAnalysisText(String text) throws IOException {
+        return analysisReader.readValue(stripFences(text));
+    }
+
+    public List<AiAnalysis> decodeBatch(String response) throws IOException {
+        return batchReader.readValue(stripFences(extractText(response)));
+    }
+
+    // Structured-output replies are bare JSON, so the text is bound without looking for fences
+    public AiAnalysis decodeStructuredAnalysis(String response) throws IOException {
+        return analysisReader.readValue(extractText(response));
+    }
+
+    public AiAnalysis decodeStructuredAnalysisText(String text) throws IOException {
+        return analysisReader.readValue(text);
+    }
+
+    public List<AiAnalysis> decodeStructuredBatch(String response) throws IOException {
+        return batchReader.readValue(extractText(response));
+    }
+
+    public String extractText(String response) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(response)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT
+                    && moveToField(parser, "candidates") && enterFirstElement(parser)
+                    && moveToField(parser, "content") && parser.nextToken() == JsonToken.START_OBJECT
+                    && moveToField(parser, "parts") && enterFirstElement(parser)
+                    && moveToField(parser, "text") && parser.nextToken() == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+        }
+        throw new IOException("Response has no candidates[0].content.parts[0].text");
+    }
+
+    /**
+     * Removes a surrounding ```json ... ``` fence, if present, without regular expressions.
+     */
+    public String stripFences(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (text.startsWith("```", start)) {
+            int newline = text.indexOf('\n', start);
+            start = newline < 0 ? start + 3 : newline + 1;
+            if (end - start >= 3 && text.startsWith("```", end - 3)) {
+                end -= 3;
+            }
+        }
+        return start == 0 && end == text.length() ? text : text.substring(start, end);
+    }
+
+    // Advances within the current object until the given field name, skipping other values.
+    private boolean moveToField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.currentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private boolean enterFirstElement(JsonParser parser) throws IOException {
+        return parser.nextToken() == JsonToken.START_ARRAY
+                && parser.nextToken() == JsonToken.START_OBJECT;
+    }
+
+    // Gemini's OpenAPI subset: mirrors AiAnalysis
+    private ObjectNode analysisSchema(boolean withActivityId) {
+        ObjectNode analysis = objectOf("overall", "pace", "heartRate", "caloriesBurned");
+        ObjectNode schema = mapper.createObjectNode().put("type", "OBJECT");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = schema.putArray("required");
+        if (withActivityId) {
+            properties.set("activityId", stringType());
+            required.add("activityId");
+        }
+        properties.set("analysis", analysis);
+        properties.set("improvements", arrayOf(objectOf("area", "recommendation")));
+        properties.set("suggestions", arrayOf(objectOf("workout", "description")));
+        properties.set("safety", arrayOf(stringType()));
+        required.add("analysis").add("improvements").add("suggestions").add("safety");
+        return schema;
+    }
+
+    private ObjectNode objectOf(String... stringFields) {
+        ObjectNode schema = mapper.createObjectNode().put("type", "OBJECT");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = schema.putArray("required");
+        for (String field : stringFields) {
+            properties.set(field, stringType());
+            required.add(field);
+        }
+        return schema;
+    }
+
+    private ObjectNode arrayOf(ObjectNode items) {
+        ObjectNode schema = mapper.createObjectNode().put("type", "ARRAY");
+        schema.set("items", items);
+        return schema;
+    }
+
+    private ObjectNode stringType() {
+        return mapper.createObjectNode().put("type", "STRING");
+    }
+}
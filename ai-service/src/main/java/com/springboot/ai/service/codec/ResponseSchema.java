@@ -0,0 +1,9 @@
+package com.springboot.ai.service.codec;
+
+/**
+ * Reply shapes Gemini can be constrained to in structured-output mode.
+ */
+public enum ResponseSchema {
+    ANALYSIS,
+    BATCH
+}
@@ -0,0 +1,31 @@
+package com.springboot.ai.service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai.fair")
+public class FairSchedulingProperties {
+
+    private boolean enabled = false;
+
+    // Deliveries held in per-user queues; listeners block once it is reached. Keep the
+    // listener prefetch at or above this, or the broker never hands over enough to reorder.
+    private int maxBuffered = 1000;
+
+    // Messages a user may start per round, e.g. ai.fair.weights.<userId>=3
+    private int defaultWeight = 1;
+    private Map<String, Integer> weights = new HashMap<>();
+
+    // Users reported individually in the per-user depth and wait gauges
+    private int topUsers = 10;
+
+    public int weightFor(String userId) {
+        return Math.max(1, weights.getOrDefault(userId, defaultWeight));
+    }
+}
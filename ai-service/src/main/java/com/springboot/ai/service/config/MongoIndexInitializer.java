@@ -0,0 +1,131 @@
+package com.springboot.ai.service.config;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.springboot.ai.service.model.CachedRecommendation;
+import com.springboot.ai.service.model.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Creates indexes on startup instead of through auto-index-creation, which cannot update index
+ * options or prepare existing data. The unique activityId index on recommendations needs
+ * duplicates left by earlier at-least-once deliveries removed before it can be built.
+ */
+@Component
+@Slf4j
+public class MongoIndexInitializer implements ApplicationRunner {
+
+    static final String CACHE_TTL_INDEX = "createdAt";
+    static final String ACTIVITY_ID_INDEX = "activityId";
+    static final String USER_CREATED_INDEX = "user_created_idx";
+    private static final int UNIQUE_INDEX_ATTEMPTS = 3;
+    // Gemini analyses before rule-based ones, then newest first
+    private static final Comparator<Document> KEEP_FIRST = Comparator
+            .comparing((Document copy) -> !Recommendation.SOURCE_GEMINI.equals(copy.getString("source")))
+            .thenComparing(copy -> copy.getDate("createdAt"), Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final MongoTemplate mongoTemplate;
+    private final RecommendationCacheProperties cacheProperties;
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate, RecommendationCacheProperties cacheProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheProperties = cacheProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ensureRecommendationIndexes();
+        if (cacheProperties.isEnabled() && cacheProperties.isMongoTier()) {
+            ensureCacheTtlIndex();
+        }
+    }
+
+    private void ensureRecommendationIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(Recommendation.class);
+        indexOps.ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named(USER_CREATED_INDEX));
+
+        boolean exists = indexOps.getIndexInfo().stream().anyMatch(index -> ACTIVITY_ID_INDEX.equals(index.getName()));
+        // Writes running meanwhile can add a duplicate between the cleanup and the build, so retry
+        for (int attempt = 1; !exists && attempt <= UNIQUE_INDEX_ATTEMPTS; attempt++) {
+            long removed = removeDuplicateRecommendations();
+            if (removed > 0) {
+                log.warn("Removed {} duplicate recommendations before building the unique activityId index", removed);
+            }
+            try {
+                indexOps.ensureIndex(new Index().on("activityId", Sort.Direction.ASC).unique().named(ACTIVITY_ID_INDEX));
+                exists = true;
+            } catch (DuplicateKeyException e) {
+                log.warn("Unique activityId index build hit a duplicate (attempt {} of {})", attempt, UNIQUE_INDEX_ATTEMPTS);
+            }
+        }
+        if (!exists) {
+            // Upserts still key on activityId; only concurrent first writes can duplicate until a restart fixes it
+            log.error("Could not build the unique activityId index on recommendations, continuing without it");
+        }
+    }
+
+    /**
+     * Keeps one recommendation per activityId, preferring a Gemini analysis over a rule-based one
+     * and then the newest, and deletes the rest.
+     *
+     * @return number of documents deleted
+     */
+    private long removeDuplicateRecommendations() {
+        MongoCollection<Document> recommendations = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Recommendation.class));
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", "$activityId").append("count", new Document("$sum", 1))),
+                new Document("$match", new Document("count", new Document("$gt", 1))));
+        long removed = 0;
+        for (Document duplicate : recommendations.aggregate(pipeline).allowDiskUse(true)) {
+            List<Document> copies = recommendations.find(Filters.eq("activityId", duplicate.get("_id")))
+                    .projection(new Document("source", 1).append("createdAt", 1))
+                    .into(new ArrayList<>());
+            copies.sort(KEEP_FIRST);
+            List<Object> obsolete = copies.subList(1, copies.size()).stream().map(copy -> copy.get("_id")).toList();
+            removed += recommendations.deleteMany(Filters.in("_id", obsolete)).getDeletedCount();
+        }
+        return removed;
+    }
+
+    // The cache is optional, so a failure here is logged rather than stopping startup
+    private void ensureCacheTtlIndex() {
+        Duration ttl = cacheProperties.getMongoTtl();
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(CachedRecommendation.class);
+            Optional<IndexInfo> existing = indexOps.getIndexInfo().stream()
+                    .filter(index -> CACHE_TTL_INDEX.equals(index.getName()))
+                    .findFirst();
+            if (existing.isEmpty()) {
+                indexOps.ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).named(CACHE_TTL_INDEX).expire(ttl));
+            } else if (!existing.get().getExpireAfter().map(ttl::equals).orElse(false)) {
+                // Index options cannot be changed by ensureIndex; collMod updates the expiry in place
+                mongoTemplate.executeCommand(new Document("collMod", mongoTemplate.getCollectionName(CachedRecommendation.class))
+                        .append("index", new Document("name", CACHE_TTL_INDEX).append("expireAfterSeconds", ttl.toSeconds())));
+                log.info("Updated recommendation cache TTL to {}", ttl);
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to create the recommendation cache TTL index, cached entries will not expire", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.springboot.ai.service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai.prompt")
+public class PromptProperties {
+
+    // Bump when templates change; recommendations from older versions are regenerated by the backfill
+    private int version = 1;
+
+    // Upper bound for a single-activity prompt, and for each activity line in a batch prompt
+    private int tokenBudget = 600;
+    private int batchTokensPerActivity = 120;
+
+    private int decimalPlaces = 1;
+    private int maxStringLength = 60;
+    private int maxNestedEntries = 4;
+
+    // additionalMetrics fields to send, most important first, keyed by activityType,
+    // e.g. ai.prompt.metric-fields.RUNNING=distance,averagePace,averageHeartRate.
+    // Types without an entry send every field, in key order, until the budget is reached.
+    private Map<String, List<String>> metricFields = new HashMap<>(Map.of(
+            "RUNNING", List.of("distance", "averagePace", "averageHeartRate", "maxHeartRate", "cadence", "elevationGain"),
+            "WALKING", List.of("distance", "steps", "averagePace", "averageHeartRate", "elevationGain"),
+            "CYCLING", List.of("distance", "averageSpeed", "averagePower", "averageHeartRate", "cadence", "elevationGain"),
+            "SWIMMING", List.of("distance", "laps", "poolLength", "strokeType", "averagePace", "averageHeartRate"),
+            "WEIGHT_TRAINING", List.of("exercises", "sets", "reps", "totalVolume", "averageHeartRate"),
+            "HIIT", List.of("intervals", "workSeconds", "restSeconds", "averageHeartRate", "maxHeartRate")));
+
+    public List<String> metricFieldsFor(String activityType) {
+        return metricFields.getOrDefault(activityType, List.of());
+    }
+}
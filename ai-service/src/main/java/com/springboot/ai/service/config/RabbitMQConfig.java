@@ -1,8 +1,10 @@
 package com.springboot.ai.service.config;
 
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
@@ -17,6 +19,11 @@ public class RabbitMQConfig {
         return new Queue("activity.queue",true);
     }
 
+    @Bean
+    public Queue activityBulkQueue() {
+        return new Queue("activity.bulk.queue",true);
+    }
+
     @Bean
     public DirectExchange activityExchange() {
         return new DirectExchange("fitness.exchange");
@@ -29,6 +36,30 @@ public class RabbitMQConfig {
                 .with("activity.tracking");
     }
 
+    @Bean
+    public Binding activityBulkBinding(Queue activityBulkQueue, DirectExchange activityExchange) {
+        return BindingBuilder.bind(activityBulkQueue)
+                .to(activityExchange)
+                .with("activity.bulk");
+    }
+
+    @Bean
+    public FanoutExchange recommendationEventsExchange() {
+        return new FanoutExchange("recommendation.events");
+    }
+
+    // One exclusive queue per instance, so every instance sees every stored recommendation
+    @Bean
+    public Queue recommendationEventsQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding recommendationEventsBinding(Queue recommendationEventsQueue, FanoutExchange recommendationEventsExchange) {
+        return BindingBuilder.bind(recommendationEventsQueue)
+                .to(recommendationEventsExchange);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
@@ -0,0 +1,42 @@
+package com.springboot.ai.service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai.cache")
+public class RecommendationCacheProperties {
+
+    private boolean enabled = false;
+    private int maxEntries = 10_000;
+    private Duration ttl = Duration.ofHours(6);
+    private boolean mongoTier = false;
+    // Expiry of Mongo-tier entries, applied to the TTL index on startup
+    private Duration mongoTtl = Duration.ofDays(7);
+    // Mongo-tier lookups slower than this count as misses
+    private Duration mongoTimeout = Duration.ofMillis(500);
+
+    private int defaultDurationBucket = 10;
+    private int defaultCaloriesBucket = 50;
+
+    // Bucket widths keyed by activityType, e.g. ai.cache.duration-buckets.RUNNING=5
+    private Map<String, Integer> durationBuckets = new HashMap<>();
+    private Map<String, Integer> caloriesBuckets = new HashMap<>();
+
+    // additionalMetrics fields that take part in the key, with their bucket width
+    private Map<String, Double> metricBuckets = new HashMap<>();
+
+    public int durationBucketFor(String activityType) {
+        return durationBuckets.getOrDefault(activityType, defaultDurationBucket);
+    }
+
+    public int caloriesBucketFor(String activityType) {
+        return caloriesBuckets.getOrDefault(activityType, defaultCaloriesBucket);
+    }
+}
@@ -0,0 +1,36 @@
+package com.springboot.ai.service.controller;
+
+import com.springboot.ai.service.dto.BackfillStatus;
+import com.springboot.ai.service.service.BackfillService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/admin/backfill")
+public class BackfillController {
+
+    private final BackfillService backfillService;
+
+    @PostMapping("/start")
+    public ResponseEntity<BackfillStatus> start() {
+
+        return ResponseEntity.ok(backfillService.start());
+    }
+
+    @PostMapping("/pause")
+    public ResponseEntity<BackfillStatus> pause() {
+
+        return ResponseEntity.ok(backfillService.pause());
+    }
+
+    @GetMapping
+    public ResponseEntity<BackfillStatus> status() {
+
+        return ResponseEntity.ok(backfillService.status());
+    }
+}
@@ -1,15 +1,31 @@
 package com.springboot.ai.service.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.ai.service.dto.CursorPage;
+import com.springboot.ai.service.dto.RecommendationSummary;
 import com.springboot.ai.service.model.Recommendation;
 import com.springboot.ai.service.service.RecommendationService;
+import com.springboot.ai.service.service.RecommendationStreamService;
+import com.springboot.ai.service.service.UserRecommendationEvents;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
@@ -17,6 +33,14 @@ import java.util.List;
 public class RecommendationController {
 
     private final RecommendationService recommendationService;
+    private final RecommendationStreamService recommendationStreamService;
+    private final UserRecommendationEvents userRecommendationEvents;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ai.streaming.sse-timeout:PT2M}")
+    private Duration sseTimeout;
+    @Value("${ai.events.heartbeat:PT15S}")
+    private Duration eventsHeartbeat;
 
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<Recommendation>> getUserRecommendations(@PathVariable String userId) {
@@ -24,9 +48,60 @@ public class RecommendationController {
         return ResponseEntity.ok(recommendationService.getUserRecommendation(userId));
     }
 
+    @GetMapping("/user/{userId}/summaries")
+    public ResponseEntity<CursorPage<RecommendationSummary>> getUserRecommendationSummaries(@PathVariable String userId,
+                                                                                       @RequestParam(required = false) String cursor,
+                                                                                       @RequestParam(defaultValue = "20") int size) {
+
+        return ResponseEntity.ok(recommendationService.getUserRecommendationSummaries(userId, cursor, size));
+    }
+
+    @GetMapping(value = "/user/{userId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUserRecommendations(@PathVariable String userId) {
+
+        StreamingResponseBody body = out -> {
+            try (Stream<Recommendation> recommendations = recommendationService.streamUserRecommendations(userId);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                for (Recommendation recommendation : (Iterable<Recommendation>) recommendations::iterator) {
+                    objectMapper.writeValue(generator, recommendation);
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping(value = "/user/{userId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamUserEvents(@PathVariable String userId) {
+
+        return userRecommendationEvents.events(userId, eventsHeartbeat);
+    }
+
     @GetMapping("/activity/{activityId}")
     public ResponseEntity<Recommendation> getActivityRecommendations(@PathVariable String activityId) {
 
-        return ResponseEntity.ok(recommendationService.getActivityRecommendation(activityId));
+        // Not generated yet is an expected state, not a server error
+        return recommendationService.findActivityRecommendation(activityId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/activity/{activityId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamActivityRecommendation(@PathVariable String activityId) {
+
+        // Subscribe to live events before checking Mongo so a recommendation stored in between is not missed
+        Flux<ServerSentEvent<Object>> live = recommendationStreamService.events(activityId, sseTimeout);
+        Mono<ServerSentEvent<Object>> stored = Mono.fromCallable(() -> recommendationService.findActivityRecommendation(activityId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(Mono::justOrEmpty)
+                .map(recommendationStreamService::finalEvent);
+
+        return Flux.merge(live, stored)
+                .takeUntil(event -> RecommendationStreamService.RECOMMENDATION_EVENT.equals(event.event()))
+                .onErrorComplete();
     }
 }
@@ -0,0 +1,53 @@
+package com.springboot.ai.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AiAnalysis {
+
+    // Only present in batch replies
+    private String activityId;
+    private Analysis analysis;
+    private List<Improvement> improvements;
+    private List<Suggestion> suggestions;
+    private List<String> safety;
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Analysis {
+        private String overall;
+        private String pace;
+        private String heartRate;
+        private String caloriesBurned;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Improvement {
+        private String area;
+        private String recommendation;
+
+        public String toDisplayString() {
+            return nullToEmpty(area) + ": " + nullToEmpty(recommendation);
+        }
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Suggestion {
+        private String workout;
+        private String description;
+
+        public String toDisplayString() {
+            return nullToEmpty(description) + " (" + nullToEmpty(workout) + ")";
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
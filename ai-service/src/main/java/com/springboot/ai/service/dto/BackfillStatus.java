@@ -0,0 +1,21 @@
+package com.springboot.ai.service.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+@Data
+@Builder
+public class BackfillStatus {
+
+    private String state;
+    private int promptVersion;
+    private String lastActivityId;
+    private long processed;
+    private long skipped;
+    private long failed;
+    private long remaining;
+    private double activitiesPerSecond;
+    private Duration eta;
+}
@@ -0,0 +1,15 @@
+package com.springboot.ai.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+    // Opaque; pass back as ?cursor= to fetch the next page. Null on the last page.
+    private String nextCursor;
+}
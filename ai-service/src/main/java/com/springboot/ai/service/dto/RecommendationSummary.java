@@ -0,0 +1,14 @@
+package com.springboot.ai.service.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class RecommendationSummary {
+
+    private String id;
+    private String activityId;
+    private String activityType;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,9 @@
+package com.springboot.ai.service.event;
+
+import com.springboot.ai.service.model.Recommendation;
+
+/**
+ * Published in-process once a recommendation has been persisted.
+ */
+public record RecommendationStoredEvent(Recommendation recommendation) {
+}
@@ -0,0 +1,269 @@
+package com.springboot.ai.service.limit;
+
+import com.springboot.ai.service.config.FairSchedulingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Per-user fair queuing in front of the Gemini pipeline. Listener threads park deliveries in a
+ * queue per userId, and a dispatcher thread starts them in weighted round-robin order (a user
+ * with weight w starts up to w messages per turn) whenever an in-flight slot is free. Interactive
+ * users are always served before bulk ones, and bulk work is capped like in the listener. A lane
+ * is only served while the rate limiter has room for it, so a backed-up bulk lane never holds
+ * back interactive work.
+ */
+@Component
+@Slf4j
+public class FairScheduler {
+
+    // How often a dispatcher held back only by the rate limiter checks it again
+    private static final long LIMITER_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final FairSchedulingProperties properties;
+    private final GeminiRateLimiter geminiRateLimiter;
+    private final int maxInFlight;
+    private final int maxBulkInFlight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition changed = lock.newCondition();
+    private final Map<String, UserQueue> interactiveQueues = new HashMap<>();
+    private final Map<String, UserQueue> bulkQueues = new HashMap<>();
+    private final ArrayDeque<UserQueue> interactiveRing = new ArrayDeque<>();
+    private final ArrayDeque<UserQueue> bulkRing = new ArrayDeque<>();
+    private int buffered;
+    private int inFlight;
+    private int bulkInFlight;
+
+    private final Timer waitTimer;
+    private final MultiGauge userDepth;
+    private final MultiGauge userWait;
+    private final Thread dispatcher;
+
+    public FairScheduler(FairSchedulingProperties properties,
+                         GeminiRateLimiter geminiRateLimiter,
+                         MeterRegistry meterRegistry,
+                         @Value("${ai.pipeline.max-in-flight:32}") int maxInFlight,
+                         @Value("${ai.lanes.interactive-share:0.25}") double interactiveShare) {
+        this.properties = properties;
+        this.geminiRateLimiter = geminiRateLimiter;
+        this.maxInFlight = maxInFlight;
+        this.maxBulkInFlight = Math.max(1, (int) (maxInFlight * (1 - interactiveShare)));
+        this.waitTimer = Timer.builder("ai.fair.wait")
+                .description("Time a delivery waited in its user queue")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.userDepth = MultiGauge.builder("ai.fair.user.depth").register(meterRegistry);
+        this.userWait = MultiGauge.builder("ai.fair.user.oldest.wait")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.dispatcher = new Thread(this::dispatchLoop, "fair-scheduler");
+        this.dispatcher.setDaemon(true);
+        if (properties.isEnabled()) {
+            dispatcher.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Queues work for the user, blocking while the buffer is full. The work is started later
+     * on the dispatcher thread; its in-flight slot is released when the returned Mono terminates.
+     */
+    public void submit(String userId, Lane lane, Supplier<Mono<?>> work) throws InterruptedException {
+        String user = userId == null ? "unknown" : userId;
+        lock.lock();
+        try {
+            while (buffered >= properties.getMaxBuffered()) {
+                notFull.await();
+            }
+            Map<String, UserQueue> queues = lane == Lane.BULK ? bulkQueues : interactiveQueues;
+            UserQueue queue = queues.get(user);
+            if (queue == null) {
+                queue = new UserQueue(user, properties.weightFor(user));
+                queues.put(user, queue);
+                (lane == Lane.BULK ? bulkRing : interactiveRing).addLast(queue);
+            }
+            queue.jobs.addLast(new Job(lane, work, System.nanoTime()));
+            buffered++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.interrupt();
+    }
+
+    @Scheduled(fixedDelayString = "${ai.fair.metrics-interval:PT10S}")
+    public void publishUserMetrics() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<UserSnapshot> heaviest = new ArrayList<>();
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            interactiveQueues.values().forEach(queue -> heaviest.add(queue.snapshot()));
+            bulkQueues.values().forEach(queue -> heaviest.add(queue.snapshot()));
+        } finally {
+            lock.unlock();
+        }
+        heaviest.sort(Comparator.comparingInt(UserSnapshot::depth).reversed());
+        List<UserSnapshot> top = heaviest.subList(0, Math.min(properties.getTopUsers(), heaviest.size()));
+        userDepth.register(top.stream()
+                .map(user -> MultiGauge.Row.of(user.tags(), user.depth()))
+                .toList(), true);
+        userWait.register(top.stream()
+                .map(user -> MultiGauge.Row.of(user.tags(), (now - user.oldestEnqueuedAt()) / 1e9))
+                .toList(), true);
+    }
+
+    private void dispatchLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Job job = next();
+                waitTimer.record(Duration.ofNanos(System.nanoTime() - job.enqueuedAt()));
+                start(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Job next() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                // Lanes the limiter has no room for are skipped; their jobs stay buffered, which
+                // blocks the listeners once the buffer is full, so Gemini backpressure still reaches them
+                boolean limited = false;
+                if (inFlight < maxInFlight) {
+                    if (!interactiveRing.isEmpty()) {
+                        if (geminiRateLimiter.hasCapacity(Lane.INTERACTIVE)) {
+                            return take(interactiveRing, interactiveQueues);
+                        }
+                        limited = true;
+                    }
+                    if (!bulkRing.isEmpty() && bulkInFlight < maxBulkInFlight) {
+                        if (geminiRateLimiter.hasCapacity(Lane.BULK)) {
+                            return take(bulkRing, bulkQueues);
+                        }
+                        limited = true;
+                    }
+                }
+                // The limiter does not signal this lock, so poll it while it is the only thing in the way
+                if (limited) {
+                    changed.awaitNanos(LIMITER_POLL_NANOS);
+                } else {
+                    changed.await();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds the lock. The user at the head of the ring keeps its turn until it has used
+    // its weight, then moves to the back; empty queues leave the ring.
+    private Job take(ArrayDeque<UserQueue> ring, Map<String, UserQueue> queues) {
+        UserQueue queue = ring.peekFirst();
+        if (queue.deficit <= 0) {
+            queue.deficit += queue.weight;
+        }
+        Job job = queue.jobs.pollFirst();
+        queue.deficit--;
+        ring.pollFirst();
+        if (queue.jobs.isEmpty()) {
+            queues.remove(queue.userId);
+        } else if (queue.deficit > 0) {
+            ring.addFirst(queue);
+        } else {
+            ring.addLast(queue);
+        }
+        buffered--;
+        inFlight++;
+        if (job.lane() == Lane.BULK) {
+            bulkInFlight++;
+        }
+        notFull.signal();
+        return job;
+    }
+
+    private void start(Job job) {
+        Mono<?> work;
+        try {
+            work = job.work().get();
+        } catch (RuntimeException e) {
+            log.error("Failed to start scheduled work", e);
+            release(job);
+            return;
+        }
+        work.doFinally(signal -> release(job)).subscribe(result -> {}, e -> {});
+    }
+
+    private void release(Job job) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (job.lane() == Lane.BULK) {
+                bulkInFlight--;
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Job(Lane lane, Supplier<Mono<?>> work, long enqueuedAt) {
+    }
+
+    private record UserSnapshot(String userId, Lane lane, int depth, long oldestEnqueuedAt) {
+
+        private Tags tags() {
+            return Tags.of("userId", userId, "lane", lane.name().toLowerCase());
+        }
+    }
+
+    private static final class UserQueue {
+        private final String userId;
+        private final int weight;
+        private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+        private int deficit;
+
+        private UserQueue(String userId, int weight) {
+            this.userId = userId;
+            this.weight = weight;
+        }
+
+        // Queues in the maps are never empty
+        private UserSnapshot snapshot() {
+            Job oldest = jobs.peekFirst();
+            return new UserSnapshot(userId, oldest.lane(), jobs.size(), oldest.enqueuedAt());
+        }
+    }
+}
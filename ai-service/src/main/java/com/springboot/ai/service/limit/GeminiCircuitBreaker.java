@@ -0,0 +1,200 @@
+package com.springboot.ai.service.limit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker over the last {@code window-size} Gemini calls. Once the failure
+ * rate crosses the threshold it rejects calls for {@code open-duration}, then lets a few trial
+ * calls through before closing again. Trials that are cancelled free their slot, and trials
+ * that have not all finished within {@code half-open-timeout} send the breaker back to OPEN.
+ */
+@Component
+@Slf4j
+public class GeminiCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean enabled;
+    private final boolean[] outcomes;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final long halfOpenTimeoutNanos;
+
+    private State state = State.CLOSED;
+    private int recorded;
+    private int next;
+    private int failures;
+    private long openedAt;
+    private long halfOpenedAt;
+    // Tells trials of an earlier half-open period apart from the current ones
+    private long halfOpenPeriod;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public GeminiCircuitBreaker(MeterRegistry meterRegistry,
+                                @Value("${ai.breaker.enabled:true}") boolean enabled,
+                                @Value("${ai.breaker.window-size:50}") int windowSize,
+                                @Value("${ai.breaker.minimum-calls:20}") int minimumCalls,
+                                @Value("${ai.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                                @Value("${ai.breaker.open-duration:PT30S}") Duration openDuration,
+                                @Value("${ai.breaker.half-open-calls:3}") int halfOpenCalls,
+                                @Value("${ai.breaker.half-open-timeout:PT2M}") Duration halfOpenTimeout) {
+        this.enabled = enabled;
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.halfOpenTimeoutNanos = halfOpenTimeout.toNanos();
+        Gauge.builder("ai.breaker.state", this, breaker -> breaker.state().ordinal())
+                .description("0=closed, 1=open, 2=half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return permission to make one call, whose outcome must be reported through it; null if the
+     * breaker rejects the call
+     */
+    public synchronized Permission tryAcquire() {
+        if (!enabled) {
+            return new Permission(-1);
+        }
+        long now = System.nanoTime();
+        if (state == State.HALF_OPEN && now - halfOpenedAt >= halfOpenTimeoutNanos) {
+            log.warn("Gemini circuit breaker trials did not finish within the half-open timeout");
+            open();
+        }
+        if (state == State.OPEN && now - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            halfOpenedAt = now;
+            halfOpenPeriod++;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.OPEN) {
+            return null;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return null;
+            }
+            trialsStarted++;
+            return new Permission(halfOpenPeriod);
+        }
+        return new Permission(-1);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private synchronized void onSuccess(long trialPeriod) {
+        if (trialPeriod >= 0) {
+            if (isCurrentTrial(trialPeriod) && ++trialsSucceeded >= halfOpenCalls) {
+                log.info("Gemini circuit breaker closed");
+                state = State.CLOSED;
+                recorded = 0;
+                next = 0;
+                failures = 0;
+            }
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    private synchronized void onFailure(long trialPeriod) {
+        if (trialPeriod >= 0) {
+            if (isCurrentTrial(trialPeriod)) {
+                open();
+            }
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+                open();
+            }
+        }
+    }
+
+    // A cancelled trial says nothing about Gemini, so its slot goes to the next call
+    private synchronized void onCancel(long trialPeriod) {
+        if (trialPeriod >= 0 && isCurrentTrial(trialPeriod)) {
+            trialsStarted--;
+        }
+    }
+
+    private boolean isCurrentTrial(long trialPeriod) {
+        return state == State.HALF_OPEN && trialPeriod == halfOpenPeriod;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length && outcomes[next]) {
+            failures--;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+        recorded = Math.min(recorded + 1, outcomes.length);
+    }
+
+    private void open() {
+        if (state != State.OPEN) {
+            log.warn("Gemini circuit breaker opened");
+        }
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    /**
+     * One permitted call. Only the first reported outcome counts.
+     */
+    public final class Permission {
+
+        // Half-open period the call is a trial of, or -1 for a regular call
+        private final long trialPeriod;
+        private boolean reported;
+
+        private Permission(long trialPeriod) {
+            this.trialPeriod = trialPeriod;
+        }
+
+        public void onSuccess() {
+            if (report()) {
+                GeminiCircuitBreaker.this.onSuccess(trialPeriod);
+            }
+        }
+
+        public void onFailure() {
+            if (report()) {
+                GeminiCircuitBreaker.this.onFailure(trialPeriod);
+            }
+        }
+
+        public void onCancel() {
+            if (report()) {
+                GeminiCircuitBreaker.this.onCancel(trialPeriod);
+            }
+        }
+
+        private synchronized boolean report() {
+            if (reported) {
+                return false;
+            }
+            reported = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.springboot.ai.service.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Shapes Gemini traffic with an AIMD concurrency limit and request/token-per-minute buckets.
+ * Calls that cannot start yet wait in a FIFO queue per {@link Lane}; interactive waiters are
+ * always served first, and bulk calls may only use the share of the limit not reserved for
+ * interactive work. {@link #awaitCapacity(Lane)} lets message listeners stop pulling from the
+ * broker while their lane is backed up.
+ */
+@Component
+@Slf4j
+public class GeminiRateLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final int maxQueue;
+    private final double interactiveShare;
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+
+    private final Queue<Waiter> interactiveWaiters = new ConcurrentLinkedQueue<>();
+    private final Queue<Waiter> bulkWaiters = new ConcurrentLinkedQueue<>();
+    private final Object capacityMonitor = new Object();
+    private double limit;
+    private int inFlight;
+    private int bulkInFlight;
+    private int queued;
+    private int bulkQueued;
+    private boolean drainScheduled;
+
+    private final Counter throttled;
+    private final Counter serverErrors;
+    private final Counter timeouts;
+
+    public GeminiRateLimiter(MeterRegistry meterRegistry,
+                             @Value("${ai.limiter.initial-limit:8}") int initialLimit,
+                             @Value("${ai.limiter.min-limit:1}") int minLimit,
+                             @Value("${ai.limiter.max-limit:64}") int maxLimit,
+                             @Value("${ai.limiter.backoff-ratio:0.7}") double backoffRatio,
+                             @Value("${ai.limiter.latency-threshold:PT20S}") Duration latencyThreshold,
+                             @Value("${ai.limiter.max-queue:64}") int maxQueue,
+                             @Value("${ai.limiter.requests-per-minute:1000}") long requestsPerMinute,
+                             @Value("${ai.limiter.tokens-per-minute:1000000}") long tokensPerMinute,
+                             @Value("${ai.lanes.interactive-share:0.25}") double interactiveShare) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.maxQueue = maxQueue;
+        this.interactiveShare = interactiveShare;
+        this.requestBucket = new TokenBucket(requestsPerMinute);
+        this.tokenBucket = new TokenBucket(tokensPerMinute);
+
+        Gauge.builder("ai.limiter.limit", this, GeminiRateLimiter::currentLimit).register(meterRegistry);
+        Gauge.builder("ai.limiter.inflight", this, GeminiRateLimiter::currentInFlight).register(meterRegistry);
+        Gauge.builder("ai.limiter.queue", this, GeminiRateLimiter::queueDepth).register(meterRegistry);
+        Gauge.builder("ai.limiter.lane.inflight", this, GeminiRateLimiter::currentBulkInFlight).tag("lane", "bulk").register(meterRegistry);
+        Gauge.builder("ai.limiter.lane.queue", this, GeminiRateLimiter::bulkQueueDepth).tag("lane", "bulk").register(meterRegistry);
+        Gauge.builder("ai.limiter.tokens.available", this, GeminiRateLimiter::availableTokens).register(meterRegistry);
+        this.throttled = Counter.builder("ai.limiter.rejections").tag("reason", "throttled").register(meterRegistry);
+        this.serverErrors = Counter.builder("ai.limiter.rejections").tag("reason", "server_error").register(meterRegistry);
+        this.timeouts = Counter.builder("ai.limiter.rejections").tag("reason", "timeout").register(meterRegistry);
+    }
+
+    public <T> Mono<T> execute(int estimatedTokens, Supplier<Mono<T>> call) {
+        return Mono.usingWhen(acquire(estimatedTokens),
+                permit -> call.get(),
+                permit -> permit.release(null),
+                (permit, error) -> permit.release(error),
+                permit -> permit.release(null));
+    }
+
+    public <T> Flux<T> executeMany(int estimatedTokens, Supplier<Flux<T>> call) {
+        return Flux.usingWhen(acquire(estimatedTokens),
+                permit -> call.get(),
+                permit -> permit.release(null),
+                (permit, error) -> permit.release(error),
+                permit -> permit.release(null));
+    }
+
+    /**
+     * Blocks the calling thread while the wait queue is full. Used by message listeners so that
+     * consumption pauses instead of piling up calls that would only fail. Bulk listeners also
+     * hold back while interactive calls are waiting, and get a proportionally smaller queue.
+     */
+    public void awaitCapacity(Lane lane) throws InterruptedException {
+        synchronized (capacityMonitor) {
+            while (!hasCapacity(lane)) {
+                capacityMonitor.wait(1000);
+            }
+        }
+    }
+
+    /**
+     * Non-blocking form of {@link #awaitCapacity}: whether a call on the lane would be queued
+     * without the lane being backed up.
+     */
+    public boolean hasCapacity(Lane lane) {
+        return lane == Lane.BULK ? !bulkBackedUp() : queueDepth() < maxQueue;
+    }
+
+    public synchronized double currentLimit() {
+        return limit;
+    }
+
+    public synchronized int currentInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queueDepth() {
+        return queued;
+    }
+
+    public synchronized int currentBulkInFlight() {
+        return bulkInFlight;
+    }
+
+    public synchronized int bulkQueueDepth() {
+        return bulkQueued;
+    }
+
+    public synchronized double availableTokens() {
+        return tokenBucket.available();
+    }
+
+    private synchronized boolean bulkBackedUp() {
+        return queued - bulkQueued > 0 || bulkQueued >= Math.max(1, (int) (maxQueue * (1 - interactiveShare)));
+    }
+
+    private Mono<Permit> acquire(int estimatedTokens) {
+        return Mono.deferContextual(context -> Mono.<Permit>create(sink -> {
+            Lane lane = Lane.from(context);
+            Waiter waiter = new Waiter(estimatedTokens, lane, sink);
+            sink.onCancel(() -> cancel(waiter));
+            synchronized (this) {
+                queued++;
+                if (lane == Lane.BULK) {
+                    bulkQueued++;
+                }
+            }
+            (lane == Lane.BULK ? bulkWaiters : interactiveWaiters).add(waiter);
+            drain();
+        }))
+                // A permit granted while its waiter was being cancelled is dropped by the sink; give it back
+                .doOnDiscard(Permit.class, permit -> permit.release(null).subscribe());
+    }
+
+    // Waiters leave the queue as soon as they are cancelled, so they stop counting towards its depth
+    private void cancel(Waiter waiter) {
+        boolean removed;
+        synchronized (this) {
+            removed = (waiter.lane == Lane.BULK ? bulkWaiters : interactiveWaiters).remove(waiter);
+            if (removed) {
+                queued--;
+                if (waiter.lane == Lane.BULK) {
+                    bulkQueued--;
+                }
+            }
+        }
+        if (removed) {
+            // The head may have been holding back the waiters behind it
+            drain();
+            synchronized (capacityMonitor) {
+                capacityMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        boolean dequeued;
+        synchronized (this) {
+            dequeued = drain(interactiveWaiters, Integer.MAX_VALUE, granted);
+            if (interactiveWaiters.isEmpty()) {
+                // Bulk never takes the interactive share of the limit, even when it sits idle
+                int bulkLimit = Math.max(1, (int) (limit * (1 - interactiveShare)));
+                dequeued |= drain(bulkWaiters, bulkLimit, granted);
+            }
+        }
+        // Completing the sinks starts the calls, so do it outside the lock
+        granted.forEach(waiter -> waiter.sink.success(new Permit(waiter.lane, System.nanoTime())));
+        if (dequeued) {
+            synchronized (capacityMonitor) {
+                capacityMonitor.notifyAll();
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private boolean drain(Queue<Waiter> waiters, int laneLimit, List<Waiter> granted) {
+        boolean dequeued = false;
+        Waiter waiter;
+        while ((waiter = waiters.peek()) != null) {
+            if (inFlight >= (int) limit || (waiter.lane == Lane.BULK && bulkInFlight >= laneLimit)) {
+                break;
+            }
+            long wait = Math.max(requestBucket.nanosUntilAvailable(1),
+                    tokenBucket.nanosUntilAvailable(waiter.tokens));
+            if (wait > 0) {
+                scheduleDrain(wait);
+                break;
+            }
+            requestBucket.tryConsume(1);
+            tokenBucket.tryConsume(waiter.tokens);
+            dequeue(waiters);
+            inFlight++;
+            if (waiter.lane == Lane.BULK) {
+                bulkInFlight++;
+            }
+            dequeued = true;
+            granted.add(waiter);
+        }
+        return dequeued;
+    }
+
+    private void dequeue(Queue<Waiter> waiters) {
+        if (waiters.poll().lane == Lane.BULK) {
+            bulkQueued--;
+        }
+        queued--;
+    }
+
+    private void scheduleDrain(long nanos) {
+        if (!drainScheduled) {
+            drainScheduled = true;
+            Schedulers.parallel().schedule(() -> {
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+                drain();
+            }, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Mono<Void> release(Lane lane, long startedAt, Throwable error) {
+        return Mono.fromRunnable(() -> {
+            long latency = System.nanoTime() - startedAt;
+            synchronized (this) {
+                inFlight--;
+                if (lane == Lane.BULK) {
+                    bulkInFlight--;
+                }
+                if (isOverload(error) || latency > latencyThresholdNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (error == null) {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            drain();
+        });
+    }
+
+    private boolean isOverload(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            if (response.getStatusCode().value() == 429) {
+                throttled.increment();
+                return true;
+            }
+            if (response.getStatusCode().is5xxServerError()) {
+                serverErrors.increment();
+                return true;
+            }
+        }
+        if (error instanceof TimeoutException) {
+            timeouts.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private final class Permit {
+        private final Lane lane;
+        private final long startedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Lane lane, long startedAt) {
+            this.lane = lane;
+            this.startedAt = startedAt;
+        }
+
+        private Mono<Void> release(Throwable error) {
+            return Mono.defer(() -> released.compareAndSet(false, true)
+                    ? GeminiRateLimiter.this.release(lane, startedAt, error)
+                    : Mono.empty());
+        }
+    }
+
+    private static final class Waiter {
+        private final int tokens;
+        private final Lane lane;
+        private final MonoSink<Permit> sink;
+
+        private Waiter(int tokens, Lane lane, MonoSink<Permit> sink) {
+            this.tokens = tokens;
+            this.lane = lane;
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.springboot.ai.service.limit;
+
+public class GeminiUnavailableException extends RuntimeException {
+
+    public GeminiUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.springboot.ai.service.limit;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Priority lane of a unit of Gemini work. Carried in the Reactor context so the limiter can
+ * tell interactive calls from bulk re-analysis without changing every signature in between.
+ */
+public enum Lane {
+    INTERACTIVE,
+    BULK;
+
+    private static final String CONTEXT_KEY = Lane.class.getName();
+
+    public Context asContext() {
+        return Context.of(CONTEXT_KEY, this);
+    }
+
+    public static Lane from(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, INTERACTIVE);
+    }
+}
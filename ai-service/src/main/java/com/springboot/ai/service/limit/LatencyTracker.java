@@ -0,0 +1,43 @@
+package com.springboot.ai.service.limit;
+
+import java.util.Arrays;
+
+/**
+ * Ring buffer of recent latencies with a cached percentile, recomputed every
+ * {@code recomputeEvery} samples so that reading it stays cheap on the hot path.
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private final double percentile;
+    private final int recomputeEvery;
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private long cachedNanos = -1;
+
+    public LatencyTracker(int size, double percentile, int recomputeEvery) {
+        this.samples = new long[size];
+        this.percentile = percentile;
+        this.recomputeEvery = recomputeEvery;
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (cachedNanos < 0 || ++sinceRecompute >= recomputeEvery) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            cachedNanos = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    /**
+     * @return the tracked percentile in nanoseconds, or -1 before the first sample
+     */
+    public synchronized long percentileNanos() {
+        return cachedNanos;
+    }
+}
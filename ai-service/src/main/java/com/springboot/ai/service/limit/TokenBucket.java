@@ -0,0 +1,47 @@
+package com.springboot.ai.service.limit;
+
+/**
+ * Continuously refilling token bucket. Not thread-safe; callers synchronize.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double available;
+    private long lastRefill;
+
+    public TokenBucket(long capacityPerMinute) {
+        this.capacity = capacityPerMinute;
+        this.refillPerNano = capacityPerMinute / 60_000_000_000d;
+        this.available = capacityPerMinute;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public boolean tryConsume(double tokens) {
+        refill();
+        // A single request larger than the bucket would otherwise never fit
+        double needed = Math.min(tokens, capacity);
+        if (available >= needed) {
+            available -= needed;
+            return true;
+        }
+        return false;
+    }
+
+    public long nanosUntilAvailable(double tokens) {
+        refill();
+        double missing = Math.min(tokens, capacity) - available;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / refillPerNano);
+    }
+
+    public double available() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,50 @@
+package com.springboot.ai.service.metrics;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Current pipeline lag at /actuator/pipelinelag. The oldest unprocessed message is the oldest
+ * delivery this instance holds; with FIFO queues anything still in the broker was published
+ * later, so its ready count is reported alongside.
+ */
+@Component
+@Endpoint(id = "pipelinelag")
+public class PipelineLagEndpoint {
+
+    private static final List<String> QUEUES = List.of("activity.queue", "activity.bulk.queue");
+
+    private final PipelineMetrics pipelineMetrics;
+    private final AmqpAdmin amqpAdmin;
+
+    public PipelineLagEndpoint(PipelineMetrics pipelineMetrics, AmqpAdmin amqpAdmin) {
+        this.pipelineMetrics = pipelineMetrics;
+        this.amqpAdmin = amqpAdmin;
+    }
+
+    @ReadOperation
+    public Map<String, Object> lag() {
+        Map<String, Object> lag = new LinkedHashMap<>();
+        lag.put("oldestUnprocessedAgeMs", pipelineMetrics.oldestUnfinishedAge().toMillis());
+        lag.put("inProgress", pipelineMetrics.unfinishedCount());
+        Map<String, Object> ready = new LinkedHashMap<>();
+        for (String queue : QUEUES) {
+            try {
+                QueueInformation information = amqpAdmin.getQueueInfo(queue);
+                ready.put(queue, information == null ? null : information.getMessageCount());
+            } catch (AmqpException e) {
+                ready.put(queue, null);
+            }
+        }
+        lag.put("readyInBroker", ready);
+        return lag;
+    }
+}
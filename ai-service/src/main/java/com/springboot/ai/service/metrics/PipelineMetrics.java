@@ -0,0 +1,97 @@
+package com.springboot.ai.service.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-stage timers for the activity-to-recommendation pipeline, plus the set of deliveries that
+ * have been received but not finished. The hot path only records a timer or touches one map
+ * entry; the oldest unfinished delivery is found by a scan when the lag is read.
+ */
+@Component
+public class PipelineMetrics {
+
+    public enum Stage { QUEUE_WAIT, PROMPT_BUILD, GEMINI_CALL, PARSE, SAVE, END_TO_END }
+
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+    // Delivery token -> publish time in epoch millis
+    private final Map<Long, Long> unfinished = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("ai.pipeline.stage")
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(Duration.ofMinutes(10))
+                    .register(meterRegistry));
+        }
+        Gauge.builder("ai.pipeline.lag", this, metrics -> metrics.oldestUnfinishedAge().toMillis() / 1000.0)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("ai.pipeline.unfinished", unfinished, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Records the queue wait of a delivery and tracks it until {@link #finished}. Deliveries
+     * without a publish time count from now.
+     *
+     * @return token to pass to {@link #finished}
+     */
+    public long received(Long publishedAt) {
+        long now = System.currentTimeMillis();
+        long published = publishedAt == null ? now : publishedAt;
+        record(Stage.QUEUE_WAIT, Math.max(0, now - published));
+        long token = tokens.incrementAndGet();
+        unfinished.put(token, published);
+        return token;
+    }
+
+    /**
+     * @param stored whether a recommendation was stored, which completes the end-to-end span
+     */
+    public void finished(long token, boolean stored) {
+        Long published = unfinished.remove(token);
+        if (published != null && stored) {
+            record(Stage.END_TO_END, Math.max(0, System.currentTimeMillis() - published));
+        }
+    }
+
+    public Duration oldestUnfinishedAge() {
+        long oldest = Long.MAX_VALUE;
+        for (long published : unfinished.values()) {
+            oldest = Math.min(oldest, published);
+        }
+        return oldest == Long.MAX_VALUE ? Duration.ZERO
+                : Duration.ofMillis(Math.max(0, System.currentTimeMillis() - oldest));
+    }
+
+    public int unfinishedCount() {
+        return unfinished.size();
+    }
+
+    public <T> T time(Stage stage, Supplier<T> work) {
+        return timers.get(stage).record(work);
+    }
+
+    public <T> Mono<T> time(Stage stage, Mono<T> work) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work.doOnSuccess(result -> timers.get(stage).record(Duration.ofNanos(System.nanoTime() - start)));
+        });
+    }
+
+    private void record(Stage stage, long millis) {
+        timers.get(stage).record(Duration.ofMillis(millis));
+    }
+}
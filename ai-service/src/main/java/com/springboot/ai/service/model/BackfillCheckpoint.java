@@ -0,0 +1,31 @@
+package com.springboot.ai.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Document(collection = "backfill_checkpoints")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BackfillCheckpoint {
+
+    @Id
+    private String id;
+    private int promptVersion;
+    // Every activity up to and including this _id has been handled
+    private String lastActivityId;
+    // Handled but failed; retried at the start of the next run
+    private List<String> failedActivityIds;
+    private long processed;
+    private long skipped;
+    private long failed;
+    private LocalDateTime updatedAt;
+}
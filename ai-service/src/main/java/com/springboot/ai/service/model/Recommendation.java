@@ -9,11 +9,15 @@ import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.util.List;
 
+// Indexes (unique activityId, userId+createdAt) are created by MongoIndexInitializer
 @Document(collection = "recommendations")
 @Data
 @Builder
 public class Recommendation {
 
+    public static final String SOURCE_GEMINI = "gemini";
+    public static final String SOURCE_RULES = "rules";
+
     @Id
     private String id;
     private String activityId;
@@ -23,6 +27,10 @@ public class Recommendation {
     private List<String> improvements;
     private List<String> suggestions;
     private List<String> safety;
+    // Prompt version the analysis was generated with; null for fallback recommendations
+    private Integer promptVersion;
+    // Where the analysis came from, SOURCE_GEMINI or SOURCE_RULES
+    private String source;
 
     @CreatedDate
     private LocalDateTime createdAt;
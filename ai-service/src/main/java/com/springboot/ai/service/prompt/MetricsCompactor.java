@@ -0,0 +1,111 @@
+package com.springboot.ai.service.prompt;
+
+import com.springboot.ai.service.config.PromptProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns additionalMetrics into short "name=value" fields: configured fields first, numbers
+ * rounded, numeric arrays reduced to min/avg/max/count and long strings or nested objects
+ * truncated. Callers drop fields from the end until the prompt fits its budget.
+ */
+@Component
+@RequiredArgsConstructor
+public class MetricsCompactor {
+
+    private final PromptProperties promptProperties;
+
+    public List<String> compact(String activityType, Map<String, Object> metrics) {
+        if (metrics == null || metrics.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> fields = new ArrayList<>();
+        List<String> selected = promptProperties.metricFieldsFor(activityType);
+        if (selected.isEmpty()) {
+            new TreeMap<>(metrics).forEach((name, value) -> addField(fields, name, value));
+        } else {
+            selected.forEach(name -> addField(fields, name, metrics.get(name)));
+        }
+        return fields;
+    }
+
+    private void addField(List<String> fields, String name, Object value) {
+        if (value != null) {
+            fields.add(name + "=" + compactValue(value, true));
+        }
+    }
+
+    private String compactValue(Object value, boolean allowNesting) {
+        if (value instanceof Number number) {
+            return formatNumber(number.doubleValue());
+        }
+        if (value instanceof Collection<?> values) {
+            return summarize(values);
+        }
+        if (value instanceof Map<?, ?> nested) {
+            return allowNesting ? compactMap(nested) : "{" + nested.size() + " fields}";
+        }
+        String text = String.valueOf(value);
+        int maxLength = promptProperties.getMaxStringLength();
+        return text.length() <= maxLength ? text : text.substring(0, maxLength) + "...";
+    }
+
+    private String summarize(Collection<?> values) {
+        if (values.isEmpty()) {
+            return "[]";
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (Object value : values) {
+            if (!(value instanceof Number number)) {
+                return "[" + compactValue(values.iterator().next(), false) + ", ... n=" + values.size() + "]";
+            }
+            double d = number.doubleValue();
+            min = Math.min(min, d);
+            max = Math.max(max, d);
+            sum += d;
+        }
+        return "min " + formatNumber(min) + "/avg " + formatNumber(sum / values.size())
+                + "/max " + formatNumber(max) + " n=" + values.size();
+    }
+
+    private String compactMap(Map<?, ?> nested) {
+        StringBuilder text = new StringBuilder("{");
+        Iterator<? extends Map.Entry<?, ?>> entries = nested.entrySet().iterator();
+        int shown = 0;
+        while (entries.hasNext() && shown < promptProperties.getMaxNestedEntries()) {
+            Map.Entry<?, ?> entry = entries.next();
+            if (shown++ > 0) {
+                text.append(", ");
+            }
+            text.append(entry.getKey()).append('=').append(compactValue(entry.getValue(), false));
+        }
+        if (entries.hasNext()) {
+            text.append(", +").append(nested.size() - shown).append(" more");
+        }
+        return text.append('}').toString();
+    }
+
+    private String formatNumber(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value)
+                .setScale(promptProperties.getDecimalPlaces(), RoundingMode.HALF_UP)
+                .stripTrailingZeros()
+                .toPlainString();
+    }
+}
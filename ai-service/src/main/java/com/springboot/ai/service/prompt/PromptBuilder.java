@@ -0,0 +1,151 @@
+package com.springboot.ai.service.prompt;
+
+import com.springboot.ai.service.config.PromptProperties;
+import com.springboot.ai.service.model.Activity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds Gemini prompts from templates compiled once per activityType. additionalMetrics are
+ * compacted and then trimmed, least important field first, until the prompt fits the token budget.
+ */
+@Component
+public class PromptBuilder {
+
+    private static final String FORMAT = """
+            {"analysis":{"overall":"...","pace":"...","heartRate":"...","caloriesBurned":"..."},\
+            "improvements":[{"area":"...","recommendation":"..."}],\
+            "suggestions":[{"workout":"...","description":"..."}],\
+            "safety":["..."]}""";
+
+    private static final String BATCH_FORMAT = """
+            [{"activityId":"id exactly as given","analysis":{"overall":"...","pace":"...","heartRate":"...","caloriesBurned":"..."},\
+            "improvements":[{"area":"...","recommendation":"..."}],\
+            "suggestions":[{"workout":"...","description":"..."}],\
+            "safety":["..."]}]""";
+
+    private static final String DEFAULT_FOCUS = "performance, improvements, next workout suggestions and safety guidelines";
+
+    private static final Map<String, String> FOCUS = Map.of(
+            "RUNNING", "pace consistency, heart-rate zones, cadence and injury prevention",
+            "WALKING", "pace, step count, heart rate and building endurance",
+            "CYCLING", "speed, power output, cadence and bike-fit safety",
+            "SWIMMING", "pace per lap, stroke efficiency, breathing and pool safety",
+            "WEIGHT_TRAINING", "training volume, progressive overload, recovery and lifting technique",
+            "YOGA", "flexibility, balance, breathing and safe progression of poses",
+            "HIIT", "work/rest ratio, peak heart rate, recovery between intervals and overtraining",
+            "STRETCHING", "mobility, range of motion and avoiding overstretching");
+
+    private static final String SINGLE_TEMPLATE = """
+            Analyze this fitness activity.%s
+            Activity Type: {activityType}
+            Duration: {duration} minutes
+            Calories Burned: {calories}
+            Metrics: {metrics}
+            Focus on %s.
+            """;
+
+    private static final String BATCH_TEMPLATE = """
+            Analyze each fitness activity below and return exactly one element per activity.%s
+            Activities:
+            {activities}
+            Focus on %s.
+            """;
+
+    private static final PromptTemplate BATCH_LINE = new PromptTemplate(
+            "- Activity Id: {id}, Type: {activityType}, Duration: {duration} min, Calories: {calories}, Metrics: {metrics}\n");
+
+    private final PromptProperties promptProperties;
+    private final MetricsCompactor metricsCompactor;
+    private final TokenEstimator tokenEstimator;
+    private final Map<String, PromptTemplate> templates = new HashMap<>();
+    private final PromptTemplate defaultTemplate;
+    private final PromptTemplate batchTemplate;
+    private final DistributionSummary singleTokens;
+    private final DistributionSummary batchTokens;
+    private final Counter droppedFields;
+
+    public PromptBuilder(PromptProperties promptProperties, MetricsCompactor metricsCompactor,
+                         TokenEstimator tokenEstimator, MeterRegistry meterRegistry,
+                         @Value("${ai.gemini.structured-output.enabled:false}") boolean structuredOutput) {
+        this.promptProperties = promptProperties;
+        this.metricsCompactor = metricsCompactor;
+        this.tokenEstimator = tokenEstimator;
+        // With structured output the response schema is sent in generationConfig, so the
+        // prompt does not need to spell out the format
+        String format = structuredOutput ? "" : "\nReply with JSON only, exactly in this format:\n" + FORMAT;
+        String batchFormat = structuredOutput ? "" : "\nReply with JSON only, as an array in this format:\n" + BATCH_FORMAT;
+        FOCUS.forEach((type, focus) -> templates.put(type, new PromptTemplate(SINGLE_TEMPLATE.formatted(format, focus))));
+        this.defaultTemplate = new PromptTemplate(SINGLE_TEMPLATE.formatted(format, DEFAULT_FOCUS));
+        this.batchTemplate = new PromptTemplate(BATCH_TEMPLATE.formatted(batchFormat, DEFAULT_FOCUS));
+        this.singleTokens = DistributionSummary.builder("ai.prompt.tokens")
+                .tag("kind", "single")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchTokens = DistributionSummary.builder("ai.prompt.tokens")
+                .tag("kind", "batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.droppedFields = Counter.builder("ai.prompt.metrics.dropped").register(meterRegistry);
+    }
+
+    public int version() {
+        return promptProperties.getVersion();
+    }
+
+    public String build(Activity activity) {
+        PromptTemplate template = templates.getOrDefault(activity.getActivityType(), defaultTemplate);
+        String prompt = render(template, activity, null, promptProperties.getTokenBudget());
+        singleTokens.record(tokenEstimator.estimate(prompt));
+        return prompt;
+    }
+
+    public String buildBatch(List<Activity> activities) {
+        StringBuilder lines = new StringBuilder();
+        for (Activity activity : activities) {
+            lines.append(render(BATCH_LINE, activity, activity.getId(), promptProperties.getBatchTokensPerActivity()));
+        }
+        String prompt = batchTemplate.render(Map.of("activities", lines.toString()));
+        batchTokens.record(tokenEstimator.estimate(prompt));
+        return prompt;
+    }
+
+    private String render(PromptTemplate template, Activity activity, String id, int budget) {
+        Map<String, String> values = new HashMap<>();
+        values.put("activityType", String.valueOf(activity.getActivityType()));
+        values.put("duration", String.valueOf(activity.getDuration()));
+        values.put("calories", String.valueOf(activity.getCaloriesBurned()));
+        if (id != null) {
+            values.put("id", id);
+        }
+
+        List<String> fields = metricsCompactor.compact(activity.getActivityType(), activity.getAdditionalMetrics());
+        int tokens = tokenEstimator.estimate(template.literalText())
+                + values.values().stream().mapToInt(tokenEstimator::estimate).sum();
+        StringBuilder metrics = new StringBuilder();
+        int kept = 0;
+        for (String field : fields) {
+            int fieldTokens = tokenEstimator.estimate(field) + 1;
+            if (tokens + fieldTokens > budget) {
+                break;
+            }
+            if (kept++ > 0) {
+                metrics.append(", ");
+            }
+            metrics.append(field);
+            tokens += fieldTokens;
+        }
+        if (kept < fields.size()) {
+            droppedFields.increment(fields.size() - kept);
+        }
+        values.put("metrics", kept == 0 ? "none" : metrics.toString());
+        return template.render(values);
+    }
+}
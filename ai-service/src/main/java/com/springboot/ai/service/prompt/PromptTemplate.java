@@ -0,0 +1,57 @@
+package com.springboot.ai.service.prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Text with {name} slots, split into literal and slot segments once so that rendering is a
+ * single pass of appends. Braces that do not enclose a plain identifier (JSON examples) are
+ * kept as literal text.
+ */
+public class PromptTemplate {
+
+    private final List<String> literals = new ArrayList<>();
+    private final List<String> slots = new ArrayList<>();
+    private final String literalText;
+
+    public PromptTemplate(String template) {
+        int literalStart = 0;
+        int open = template.indexOf('{');
+        while (open >= 0) {
+            int close = template.indexOf('}', open);
+            if (close > open + 1 && isIdentifier(template, open + 1, close)) {
+                literals.add(template.substring(literalStart, open));
+                slots.add(template.substring(open + 1, close));
+                literalStart = close + 1;
+            }
+            open = template.indexOf('{', open + 1);
+        }
+        literals.add(template.substring(literalStart));
+        this.literalText = String.join("", literals);
+    }
+
+    public String render(Map<String, String> values) {
+        StringBuilder prompt = new StringBuilder(literalText.length() + 256);
+        for (int i = 0; i < slots.size(); i++) {
+            prompt.append(literals.get(i)).append(values.getOrDefault(slots.get(i), ""));
+        }
+        return prompt.append(literals.get(slots.size())).toString();
+    }
+
+    /**
+     * The template with every slot left empty, i.e. the fixed part of every rendered prompt.
+     */
+    public String literalText() {
+        return literalText;
+    }
+
+    private static boolean isIdentifier(String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
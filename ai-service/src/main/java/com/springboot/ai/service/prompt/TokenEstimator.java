@@ -0,0 +1,25 @@
+package com.springboot.ai.service.prompt;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Cheap token estimate for Gemini prompts: about four characters per token for English text,
+ * with digits and punctuation counted more heavily since they tokenize poorly.
+ */
+@Component
+public class TokenEstimator {
+
+    public int estimate(CharSequence text) {
+        int letters = 0;
+        int symbols = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetter(c) || Character.isWhitespace(c)) {
+                letters++;
+            } else {
+                symbols++;
+            }
+        }
+        return (letters + 3) / 4 + (symbols + 1) / 2;
+    }
+}
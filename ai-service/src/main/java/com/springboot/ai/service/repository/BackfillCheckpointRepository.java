@@ -0,0 +1,9 @@
+package com.springboot.ai.service.repository;
+
+import com.springboot.ai.service.model.BackfillCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BackfillCheckpointRepository extends MongoRepository<BackfillCheckpoint, String> {
+}
@@ -0,0 +1,9 @@
+package com.springboot.ai.service.repository;
+
+import com.springboot.ai.service.model.CachedRecommendation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CachedRecommendationRepository extends MongoRepository<CachedRecommendation, String> {
+}
@@ -0,0 +1,24 @@
+package com.springboot.ai.service.repository;
+
+import com.springboot.ai.service.model.Recommendation;
+
+import java.util.List;
+
+/**
+ * Writes keyed by activityId, so a redelivered or regenerated recommendation replaces the
+ * stored one instead of adding a second document.
+ */
+public interface RecommendationRepositoryCustom {
+
+    /**
+     * @return the stored document, whose id is the existing one if the activity already had a
+     * recommendation
+     */
+    Recommendation upsertByActivityId(Recommendation recommendation);
+
+    /**
+     * Unordered bulk upsert; per-document failures surface as a BulkOperationException. Each
+     * recommendation's id is set to the stored document's id afterwards.
+     */
+    void upsertAllByActivityId(List<Recommendation> recommendations);
+}
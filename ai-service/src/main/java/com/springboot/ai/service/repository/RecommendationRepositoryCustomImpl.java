@@ -0,0 +1,80 @@
+package com.springboot.ai.service.repository;
+
+import com.mongodb.WriteConcern;
+import com.springboot.ai.service.model.Recommendation;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RecommendationRepositoryCustomImpl implements RecommendationRepositoryCustom {
+
+    private final MongoTemplate writeTemplate;
+
+    public RecommendationRepositoryCustomImpl(MongoDatabaseFactory mongoDatabaseFactory,
+                                              MongoTemplate mongoTemplate,
+                                              @Value("${ai.persistence.write-concern:ACKNOWLEDGED}") String writeConcern) {
+        this.writeTemplate = new MongoTemplate(mongoDatabaseFactory, mongoTemplate.getConverter());
+        this.writeTemplate.setWriteConcern(WriteConcern.valueOf(writeConcern));
+    }
+
+    @Override
+    public Recommendation upsertByActivityId(Recommendation recommendation) {
+        return writeTemplate.findAndModify(byActivityId(recommendation), toUpdate(recommendation),
+                FindAndModifyOptions.options().upsert(true).returnNew(true), Recommendation.class);
+    }
+
+    @Override
+    public void upsertAllByActivityId(List<Recommendation> recommendations) {
+        BulkOperations bulk = writeTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Recommendation.class);
+        recommendations.forEach(recommendation -> bulk.upsert(byActivityId(recommendation), toUpdate(recommendation)));
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // The rest of the batch was written and its callers are completed with these objects
+            readBackIds(recommendations);
+            throw e;
+        }
+        readBackIds(recommendations);
+    }
+
+    // Upserts that matched an existing document keep its _id, which the bulk result does not report
+    private void readBackIds(List<Recommendation> recommendations) {
+        Query query = Query.query(Criteria.where("activityId")
+                .in(recommendations.stream().map(Recommendation::getActivityId).toList()));
+        query.fields().include("_id", "activityId");
+        Map<String, String> ids = new HashMap<>();
+        for (Document stored : writeTemplate.find(query, Document.class, writeTemplate.getCollectionName(Recommendation.class))) {
+            ids.put(stored.getString("activityId"), stored.get("_id").toString());
+        }
+        recommendations.forEach(recommendation -> recommendation.setId(ids.get(recommendation.getActivityId())));
+    }
+
+    private Query byActivityId(Recommendation recommendation) {
+        return Query.query(Criteria.where("activityId").is(recommendation.getActivityId()));
+    }
+
+    // Every field is overwritten except _id, which is only set when the document is created;
+    // without one the server generates it
+    private Update toUpdate(Recommendation recommendation) {
+        Document document = new Document();
+        writeTemplate.getConverter().write(recommendation, document);
+        Object id = document.remove("_id");
+        Update update = new Update();
+        if (id != null) {
+            update.setOnInsert("_id", id);
+        }
+        document.forEach(update::set);
+        return update;
+    }
+}
@@ -0,0 +1,111 @@
+package com.springboot.ai.service.rules;
+
+import com.springboot.ai.service.model.Activity;
+
+import java.util.Map;
+
+/**
+ * Numbers the rules look at, extracted once per activity. Metrics that are missing or not
+ * numeric are NaN, which fails every comparison, so rules on them simply do not fire.
+ */
+public final class ActivityFacts {
+
+    private final String activityType;
+    private final double duration;
+    private final double calories;
+    private final double caloriesPerMinute;
+    private final double distance;
+    private final double pace;
+    private final double speed;
+    private final double averageHeartRate;
+    private final double maxHeartRate;
+    private final double cadence;
+    private final double steps;
+
+    private ActivityFacts(Activity activity) {
+        Map<String, Object> metrics = activity.getAdditionalMetrics() == null ? Map.of() : activity.getAdditionalMetrics();
+        this.activityType = activity.getActivityType() == null ? "OTHER" : activity.getActivityType();
+        this.duration = activity.getDuration() == null ? Double.NaN : activity.getDuration();
+        this.calories = activity.getCaloriesBurned() == null ? Double.NaN : activity.getCaloriesBurned();
+        this.caloriesPerMinute = duration > 0 ? calories / duration : Double.NaN;
+        this.distance = number(metrics, "distance");
+        double reportedPace = number(metrics, "averagePace", "pace");
+        this.pace = !Double.isNaN(reportedPace) ? reportedPace : distance > 0 ? duration / distance : Double.NaN;
+        double reportedSpeed = number(metrics, "averageSpeed", "speed");
+        this.speed = !Double.isNaN(reportedSpeed) ? reportedSpeed : duration > 0 ? distance / (duration / 60) : Double.NaN;
+        this.averageHeartRate = number(metrics, "averageHeartRate", "avgHeartRate", "heartRate");
+        this.maxHeartRate = number(metrics, "maxHeartRate");
+        this.cadence = number(metrics, "cadence");
+        this.steps = number(metrics, "steps");
+    }
+
+    public static ActivityFacts of(Activity activity) {
+        return new ActivityFacts(activity);
+    }
+
+    public String activityType() {
+        return activityType;
+    }
+
+    public double duration() {
+        return duration;
+    }
+
+    public double calories() {
+        return calories;
+    }
+
+    public double caloriesPerMinute() {
+        return caloriesPerMinute;
+    }
+
+    // Kilometres
+    public double distance() {
+        return distance;
+    }
+
+    // Minutes per kilometre
+    public double pace() {
+        return pace;
+    }
+
+    // Kilometres per hour
+    public double speed() {
+        return speed;
+    }
+
+    public double averageHeartRate() {
+        return averageHeartRate;
+    }
+
+    public double maxHeartRate() {
+        return maxHeartRate;
+    }
+
+    public double cadence() {
+        return cadence;
+    }
+
+    public double steps() {
+        return steps;
+    }
+
+    public static boolean known(double value) {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+
+    // One decimal place, without the trailing ".0" for whole numbers
+    public static String format(double value) {
+        long tenths = Math.round(value * 10);
+        return tenths % 10 == 0 ? Long.toString(tenths / 10) : Double.toString(tenths / 10.0);
+    }
+
+    private static double number(Map<String, Object> metrics, String... names) {
+        for (String name : names) {
+            if (metrics.get(name) instanceof Number value) {
+                return value.doubleValue();
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,132 @@
+package com.springboot.ai.service.rules;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.springboot.ai.service.rules.ActivityFacts.format;
+import static com.springboot.ai.service.rules.ActivityFacts.known;
+import static com.springboot.ai.service.rules.Rule.analysis;
+import static com.springboot.ai.service.rules.Rule.improvement;
+import static com.springboot.ai.service.rules.Rule.safety;
+import static com.springboot.ai.service.rules.Rule.suggestion;
+
+/**
+ * Rule definitions: rules shared by every activity type, plus rules per activityType. Texts follow
+ * the formats of Gemini output, "Area: recommendation" for improvements and
+ * "description (workout)" for suggestions.
+ */
+final class ActivityRules {
+
+    static final List<Rule> COMMON = List.of(
+            analysis(facts -> known(facts.duration()), facts -> "Overall: " + format(facts.duration()) + " minute "
+                    + facts.activityType().toLowerCase().replace('_', ' ') + " session"
+                    + (known(facts.calories()) ? " burning " + format(facts.calories()) + " kcal" : "") + "."),
+            analysis(facts -> known(facts.caloriesPerMinute()), facts -> "Calories: " + format(facts.caloriesPerMinute())
+                    + " kcal per minute, " + intensity(facts.caloriesPerMinute()) + " intensity."),
+            analysis(facts -> known(facts.averageHeartRate()), facts -> "Heart Rate: average of "
+                    + format(facts.averageHeartRate()) + " bpm, " + heartRateZone(facts.averageHeartRate()) + "."),
+
+            improvement(facts -> facts.duration() < 15, facts ->
+                    "Duration: Sessions under 15 minutes give limited training effect; build towards 20-30 minutes"),
+            improvement(facts -> facts.caloriesPerMinute() < 4, facts ->
+                    "Intensity: Effort was light; add a few harder intervals to raise the training stimulus"),
+            improvement(facts -> facts.averageHeartRate() > 165, facts ->
+                    "Pacing: Average heart rate was high; keep most sessions at a conversational effort"),
+
+            safety(facts -> facts.maxHeartRate() > 185 || facts.averageHeartRate() > 170, facts ->
+                    "Heart rate reached " + format(known(facts.maxHeartRate()) ? facts.maxHeartRate() : facts.averageHeartRate())
+                            + " bpm; stop and rest if you feel dizzy, short of breath or chest pain"),
+            safety(facts -> facts.duration() > 90, facts ->
+                    "Long session: drink regularly and refuel with carbohydrates and protein within an hour"),
+            safety(facts -> facts.caloriesPerMinute() > 14, facts ->
+                    "Very high energy output; allow at least a day of easier training afterwards"));
+
+    static final Map<String, List<Rule>> BY_TYPE = Map.of(
+            "RUNNING", List.of(
+                    analysis(facts -> known(facts.pace()), facts -> "Pace: " + format(facts.pace()) + " min/km"
+                            + (facts.pace() > 7 ? ", an easy aerobic effort." : facts.pace() < 5 ? ", a fast effort." : ", a steady effort.")),
+                    improvement(facts -> facts.cadence() < 160, facts ->
+                            "Cadence: " + format(facts.cadence()) + " steps/min is low; aim for 165-175 with shorter strides"),
+                    suggestion(facts -> facts.pace() > 7, facts ->
+                            "Alternate 3 minutes running with 1 minute walking to build endurance (Run/Walk Intervals)"),
+                    suggestion(facts -> facts.pace() <= 7 || !known(facts.pace()), facts ->
+                            "20 minutes at a comfortably hard effort after a 10 minute warm-up (Tempo Run)"),
+                    suggestion(facts -> true, facts ->
+                            "30-40 minutes at an easy, conversational pace the day after (Recovery Run)"),
+                    safety(facts -> facts.distance() >= 15, facts ->
+                            "Carry water on runs over 15 km and replace worn shoes every 600-800 km")),
+            "WALKING", List.of(
+                    analysis(facts -> known(facts.pace()), facts -> "Pace: " + format(facts.pace()) + " min/km."),
+                    improvement(facts -> facts.steps() < 7000, facts ->
+                            "Steps: " + format(facts.steps()) + " steps; aim for 7,000-10,000 across the day"),
+                    suggestion(facts -> true, facts ->
+                            "Add 1 minute of brisk walking every 5 minutes (Brisk Walk Intervals)"),
+                    suggestion(facts -> facts.duration() >= 45, facts ->
+                            "A route with gentle hills to add intensity without more time (Hill Walk)")),
+            "CYCLING", List.of(
+                    analysis(facts -> known(facts.speed()), facts -> "Pace: average speed of " + format(facts.speed()) + " km/h."),
+                    improvement(facts -> facts.cadence() < 75, facts ->
+                            "Cadence: " + format(facts.cadence()) + " rpm; use an easier gear and spin at 80-90 rpm"),
+                    suggestion(facts -> true, facts ->
+                            "5 x 4 minutes hard with 3 minutes easy spinning between (Cycling Intervals)"),
+                    suggestion(facts -> facts.duration() < 60, facts ->
+                            "A 90 minute ride at an easy, steady effort (Endurance Ride)"),
+                    safety(facts -> true, facts -> "Wear a helmet and use lights in low visibility"),
+                    safety(facts -> facts.duration() > 60, facts ->
+                            "Eat 30-60 g of carbohydrate per hour on rides longer than an hour")),
+            "SWIMMING", List.of(
+                    improvement(facts -> facts.duration() < 30, facts ->
+                            "Volume: Build towards 30 minutes of continuous or interval swimming"),
+                    suggestion(facts -> true, facts ->
+                            "Catch-up and single-arm drills between easy lengths (Technique Drills)"),
+                    suggestion(facts -> true, facts ->
+                            "8 x 50 m at a strong pace with 20 seconds rest (Swim Intervals)"),
+                    safety(facts -> true, facts -> "Swim where a lifeguard is present and never swim alone in open water")),
+            "WEIGHT_TRAINING", List.of(
+                    improvement(facts -> facts.duration() > 75, facts ->
+                            "Session length: Keep strength sessions under 75 minutes to maintain quality"),
+                    improvement(facts -> true, facts ->
+                            "Progression: Add weight or a repetition each week while form stays solid"),
+                    suggestion(facts -> true, facts ->
+                            "Squat, hinge, push and pull movements for 3 sets of 8-12 (Full Body Strength)"),
+                    safety(facts -> true, facts -> "Warm up with lighter sets and use a spotter for heavy lifts"),
+                    safety(facts -> true, facts -> "Give each muscle group 48 hours before training it hard again")),
+            "HIIT", List.of(
+                    improvement(facts -> facts.duration() > 40, facts ->
+                            "Structure: HIIT beyond 30-40 minutes loses intensity; shorten it and push the work intervals"),
+                    suggestion(facts -> true, facts ->
+                            "8 rounds of 20 seconds all-out and 10 seconds rest (Tabata)"),
+                    suggestion(facts -> true, facts ->
+                            "An easy 30 minute walk, ride or swim the next day (Active Recovery)"),
+                    safety(facts -> true, facts -> "Limit HIIT to 2-3 sessions a week with rest days between")),
+            "YOGA", List.of(
+                    suggestion(facts -> true, facts ->
+                            "Hold each pose for 5-8 breaths with a focus on steady breathing (Hatha Flow)"),
+                    safety(facts -> true, facts -> "Move into poses gradually and skip any that cause joint pain")),
+            "STRETCHING", List.of(
+                    suggestion(facts -> true, facts ->
+                            "10 minutes of hip, hamstring and shoulder stretches after each workout (Mobility Routine)"),
+                    safety(facts -> true, facts -> "Stretch warm muscles and avoid bouncing at the end of the range")));
+
+    static final List<Rule> DEFAULTS = List.of(
+            improvement(facts -> true, facts ->
+                    "Consistency: Aim for 3-5 sessions a week and increase volume by no more than 10% per week"),
+            suggestion(facts -> true, facts ->
+                    "30 minutes at a moderate effort you can hold a conversation at (Steady Cardio)"),
+            safety(facts -> true, facts -> "Always warm up before exercise"),
+            safety(facts -> true, facts -> "Stay hydrated"));
+
+    private ActivityRules() {
+    }
+
+    private static String intensity(double caloriesPerMinute) {
+        return caloriesPerMinute < 4 ? "light" : caloriesPerMinute < 8 ? "moderate" : caloriesPerMinute < 12 ? "vigorous" : "very high";
+    }
+
+    private static String heartRateZone(double heartRate) {
+        return heartRate < 115 ? "a recovery effort"
+                : heartRate < 140 ? "an aerobic base effort"
+                : heartRate < 160 ? "a tempo effort"
+                : "a threshold or harder effort";
+    }
+}
@@ -0,0 +1,85 @@
+package com.springboot.ai.service.rules;
+
+import com.springboot.ai.service.model.Activity;
+import com.springboot.ai.service.model.Recommendation;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a recommendation from local rules over duration, calories, pace and heart rate, without
+ * calling Gemini. Used as the fallback when Gemini is unavailable or its reply cannot be used, and
+ * as the optional fast path that answers first and is enriched by Gemini afterwards.
+ */
+@Component
+public class RecommendationRuleEngine {
+
+    private final Map<String, Rule[]> rulesByType = new HashMap<>();
+    private final Rule[] defaultRules;
+
+    public RecommendationRuleEngine() {
+        ActivityRules.BY_TYPE.forEach((type, rules) -> rulesByType.put(type, combine(rules)));
+        this.defaultRules = combine(List.of());
+    }
+
+    public Recommendation evaluate(Activity activity) {
+        ActivityFacts facts = ActivityFacts.of(activity);
+        StringBuilder analysis = new StringBuilder();
+        List<String> improvements = new ArrayList<>(4);
+        List<String> suggestions = new ArrayList<>(4);
+        List<String> safety = new ArrayList<>(4);
+
+        for (Rule rule : rulesByType.getOrDefault(facts.activityType(), defaultRules)) {
+            if (!rule.condition().test(facts)) {
+                continue;
+            }
+            String text = rule.text().apply(facts);
+            switch (rule.section()) {
+                case ANALYSIS -> analysis.append(text).append("\n\n");
+                case IMPROVEMENT -> improvements.add(text);
+                case SUGGESTION -> suggestions.add(text);
+                case SAFETY -> safety.add(text);
+            }
+        }
+        // Sections no rule contributed to get the general advice
+        boolean noImprovements = improvements.isEmpty();
+        boolean noSuggestions = suggestions.isEmpty();
+        boolean noSafety = safety.isEmpty();
+        for (Rule rule : ActivityRules.DEFAULTS) {
+            switch (rule.section()) {
+                case IMPROVEMENT -> addIf(noImprovements, improvements, rule, facts);
+                case SUGGESTION -> addIf(noSuggestions, suggestions, rule, facts);
+                case SAFETY -> addIf(noSafety, safety, rule, facts);
+                case ANALYSIS -> { }
+            }
+        }
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getActivityType())
+                .recommendation(analysis.toString().trim())
+                .improvements(improvements)
+                .suggestions(suggestions)
+                .safety(safety)
+                .source(Recommendation.SOURCE_RULES)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static void addIf(boolean empty, List<String> section, Rule rule, ActivityFacts facts) {
+        if (empty) {
+            section.add(rule.text().apply(facts));
+        }
+    }
+
+    private static Rule[] combine(List<Rule> typeRules) {
+        List<Rule> rules = new ArrayList<>(ActivityRules.COMMON);
+        rules.addAll(typeRules);
+        return rules.toArray(new Rule[0]);
+    }
+}
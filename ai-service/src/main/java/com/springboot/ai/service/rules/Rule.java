@@ -0,0 +1,34 @@
+package com.springboot.ai.service.rules;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A condition over {@link ActivityFacts} and the text it contributes to one section of the
+ * recommendation when it holds.
+ */
+public record Rule(Section section, Predicate<ActivityFacts> condition, Function<ActivityFacts, String> text) {
+
+    public enum Section {
+        ANALYSIS,
+        IMPROVEMENT,
+        SUGGESTION,
+        SAFETY
+    }
+
+    public static Rule analysis(Predicate<ActivityFacts> condition, Function<ActivityFacts, String> text) {
+        return new Rule(Section.ANALYSIS, condition, text);
+    }
+
+    public static Rule improvement(Predicate<ActivityFacts> condition, Function<ActivityFacts, String> text) {
+        return new Rule(Section.IMPROVEMENT, condition, text);
+    }
+
+    public static Rule suggestion(Predicate<ActivityFacts> condition, Function<ActivityFacts, String> text) {
+        return new Rule(Section.SUGGESTION, condition, text);
+    }
+
+    public static Rule safety(Predicate<ActivityFacts> condition, Function<ActivityFacts, String> text) {
+        return new Rule(Section.SAFETY, condition, text);
+    }
+}
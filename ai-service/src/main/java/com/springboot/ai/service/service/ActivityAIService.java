@@ -1,192 +1,307 @@
 package com.springboot.ai.service.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.ai.service.codec.GeminiCodec;
+import com.springboot.ai.service.codec.ResponseSchema;
+import com.springboot.ai.service.dto.AiAnalysis;
+import com.springboot.ai.service.limit.GeminiUnavailableException;
+import com.springboot.ai.service.limit.Lane;
+import com.springboot.ai.service.metrics.PipelineMetrics;
+import com.springboot.ai.service.metrics.PipelineMetrics.Stage;
 import com.springboot.ai.service.model.Activity;
 import com.springboot.ai.service.model.Recommendation;
-import lombok.RequiredArgsConstructor;
+import com.springboot.ai.service.prompt.PromptBuilder;
+import com.springboot.ai.service.rules.RecommendationRuleEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class ActivityAIService {
 
     private final GeminiService geminiService;
+    private final GeminiCodec geminiCodec;
+    private final PromptBuilder promptBuilder;
+    private final RecommendationCache recommendationCache;
+    private final RecommendationStreamService recommendationStreamService;
+    private final boolean streamingEnabled;
+    // One batcher per lane so that batch calls keep the lane of the activities they carry
+    private final Map<Lane, ActivityBatcher> activityBatchers = new EnumMap<>(Lane.class);
+    private final Counter parseSuccesses;
+    private final Counter parseFailures;
+    private final RecommendationRuleEngine ruleEngine;
+    private final PipelineMetrics pipelineMetrics;
+    private final boolean fastPath;
+    private final Counter fastPathRecommendations;
+    private final Counter fallbackRecommendations;
 
-    public Recommendation generateRecommendation(Activity activity) {
-        String prompt = createPromptForActivity(activity);
-        String aiResponse = geminiService.getAnswer(prompt);
-        log.info("Response from AI: {}", aiResponse);
+    public ActivityAIService(GeminiService geminiService,
+                             GeminiCodec geminiCodec,
+                             PromptBuilder promptBuilder,
+                             RecommendationCache recommendationCache,
+                             RecommendationStreamService recommendationStreamService,
+                             RecommendationRuleEngine ruleEngine,
+                             PipelineMetrics pipelineMetrics,
+                             MeterRegistry meterRegistry,
+                             @Value("${ai.rules.fast-path.enabled:false}") boolean fastPath,
+                             @Value("${ai.streaming.enabled:false}") boolean streamingEnabled,
+                             @Value("${ai.batch.enabled:false}") boolean batchingEnabled,
+                             @Value("${ai.batch.max-size:8}") int maxBatchSize,
+                             @Value("${ai.batch.max-wait-ms:200}") long maxWaitMs,
+                             @Value("${ai.batch.max-concurrent:8}") int maxConcurrentBatches) {
+        this.geminiService = geminiService;
+        this.geminiCodec = geminiCodec;
+        this.promptBuilder = promptBuilder;
+        this.recommendationCache = recommendationCache;
+        this.recommendationStreamService = recommendationStreamService;
+        this.streamingEnabled = streamingEnabled;
+        this.ruleEngine = ruleEngine;
+        this.pipelineMetrics = pipelineMetrics;
+        this.fastPath = fastPath;
+        this.fastPathRecommendations = Counter.builder("ai.rules.recommendations")
+                .tag("reason", "fast_path")
+                .register(meterRegistry);
+        this.fallbackRecommendations = Counter.builder("ai.rules.recommendations")
+                .tag("reason", "fallback")
+                .register(meterRegistry);
+        String mode = geminiService.isStructuredOutput() ? "structured" : "text";
+        this.parseSuccesses = Counter.builder("ai.response.parse")
+                .tag("mode", mode)
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.parseFailures = Counter.builder("ai.response.parse")
+                .tag("mode", mode)
+                .tag("outcome", "failure")
+                .register(meterRegistry);
+        if (batchingEnabled) {
+            for (Lane lane : Lane.values()) {
+                activityBatchers.put(lane, new ActivityBatcher(maxBatchSize, Duration.ofMillis(maxWaitMs), maxConcurrentBatches,
+                        activities -> generateBatchRecommendations(activities).contextWrite(lane.asContext()),
+                        activity -> generateSingleRecommendation(activity).contextWrite(lane.asContext()),
+                        this::isGeminiUnavailable,
+                        meterRegistry));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        activityBatchers.values().forEach(ActivityBatcher::shutdown);
+    }
+
+    public boolean isFastPath() {
+        return fastPath;
+    }
+
+    /**
+     * With the fast path enabled, cache misses are answered by the rule engine and the caller is
+     * expected to {@link #enrich} them afterwards.
+     */
+    public Mono<Recommendation> generateRecommendation(Activity activity) {
+        if (!fastPath) {
+            return generateAiRecommendation(activity);
+        }
+        return recommendationCache.lookup(activity)
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    fastPathRecommendations.increment();
+                    return ruleEngine.evaluate(activity);
+                }));
+    }
+
+    /**
+     * Gemini analysis, from the cache when possible. Falls back to the rule engine when Gemini is
+     * unavailable or overloaded, or its reply cannot be parsed.
+     */
+    public Mono<Recommendation> generateAiRecommendation(Activity activity) {
+        return recommendationCache.lookup(activity)
+                .switchIfEmpty(Mono.deferContextual(context -> activityBatchers.isEmpty()
+                        ? generateSingleRecommendation(activity)
+                        : activityBatchers.get(Lane.from(context)).submit(activity)))
+                .onErrorResume(this::isGeminiUnavailable, e -> {
+                    log.warn("Gemini unavailable ({}), using rules for activity {}", e.toString(), activity.getId());
+                    return Mono.just(createFallbackRecommendation(activity));
+                });
+    }
+
+    /**
+     * Replaces a rule-based recommendation with a Gemini analysis; empty if Gemini could not
+     * provide one, in which case the rule-based result stays.
+     */
+    public Mono<Recommendation> enrich(Activity activity) {
+        return generateAiRecommendation(activity)
+                .filter(recommendation -> Recommendation.SOURCE_GEMINI.equals(recommendation.getSource()));
+    }
+
+    // Breaker open, or 429/5xx/timeouts that outlasted the retries
+    private boolean isGeminiUnavailable(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == 429 || response.getStatusCode().is5xxServerError();
+        }
+        return error instanceof GeminiUnavailableException || error instanceof TimeoutException;
+    }
+
+    private Mono<Recommendation> generateSingleRecommendation(Activity activity) {
+        String prompt = pipelineMetrics.time(Stage.PROMPT_BUILD, () -> promptBuilder.build(activity));
+        if (streamingEnabled) {
+            return generateStreamingRecommendation(activity, prompt);
+        }
+        return pipelineMetrics.time(Stage.GEMINI_CALL, geminiService.getAnswer(prompt, ResponseSchema.ANALYSIS))
+                .doOnNext(aiResponse -> log.info("Response from AI: {}", aiResponse))
+                .map(aiResponse -> pipelineMetrics.time(Stage.PARSE, () -> processAIResponse(activity, aiResponse)));
+    }
 
-        return processAIResponse(activity, aiResponse);
+    private Mono<Recommendation> generateStreamingRecommendation(Activity activity, String prompt) {
+        recommendationStreamService.open(activity.getId());
+        return pipelineMetrics.time(Stage.GEMINI_CALL, geminiService.streamAnswer(prompt, ResponseSchema.ANALYSIS)
+                        .doOnNext(chunk -> recommendationStreamService.emitChunk(activity.getId(), chunk))
+                        .collect(StringBuilder::new, StringBuilder::append))
+                .map(text -> pipelineMetrics.time(Stage.PARSE, () -> {
+                    try {
+                        AiAnalysis analysis = geminiService.isStructuredOutput()
+                                ? geminiCodec.decodeStructuredAnalysisText(text.toString())
+                                : geminiCodec.decodeAnalysisText(text.toString());
+                        parseSuccesses.increment();
+                        Recommendation recommendation = buildRecommendation(activity, analysis);
+                        recommendationCache.store(activity, recommendation);
+                        return recommendation;
+                    } catch (Exception e) {
+                        parseFailures.increment();
+                        log.warn("Unable to parse streamed AI response for activity {}", activity.getId(), e);
+                        return createFallbackRecommendation(activity);
+                    }
+                }))
+                .doOnError(e -> recommendationStreamService.abort(activity.getId()));
+    }
+
+    private Mono<Map<String, Recommendation>> generateBatchRecommendations(List<Activity> activities) {
+        String prompt = pipelineMetrics.time(Stage.PROMPT_BUILD, () -> promptBuilder.buildBatch(activities));
+        return pipelineMetrics.time(Stage.GEMINI_CALL, geminiService.getAnswer(prompt, ResponseSchema.BATCH))
+                .doOnNext(aiResponse -> log.info("Batch response from AI: {}", aiResponse))
+                .map(aiResponse -> pipelineMetrics.time(Stage.PARSE, () -> processBatchAIResponse(activities, aiResponse)));
     }
 
     private Recommendation processAIResponse(Activity activity, String aiResponse) {
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(aiResponse);
-
-            JsonNode textNode = rootNode.path("candidates")
-                    .get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
-
-            String jsonContent = textNode.asText()
-                    .replaceAll("```json\\n","")
-                    .replaceAll("\\n```","")
-                    .trim();
-
-//            log.info("Parsed Response Content: {}", jsonContent);
-
-            JsonNode analysisJson = mapper.readTree(jsonContent);
-            JsonNode analysisNode = analysisJson.path("analysis");
-            StringBuilder fullAnalysis = new StringBuilder();
-            addAnalysisSection(fullAnalysis, analysisNode, "overall","Overall: ");
-            addAnalysisSection(fullAnalysis, analysisNode, "pace","Pace: ");
-            addAnalysisSection(fullAnalysis, analysisNode, "heartRate","Heart Rate: ");
-            addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned","Calories: ");
-
-            List<String> improvements = extractImprovements(analysisJson.path("improvements"));
-            List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
-            List<String> safety = extractSafetyGuidelines(analysisJson.path("safety"));
-
-            return Recommendation.builder()
-                    .activityId(activity.getId())
-                    .userId(activity.getUserId())
-                    .activityType(activity.getActivityType())
-                    .recommendation(fullAnalysis.toString().trim())
-                    .improvements(improvements)
-                    .suggestions(suggestions)
-                    .safety(safety)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-
+            AiAnalysis analysis = geminiService.isStructuredOutput()
+                    ? geminiCodec.decodeStructuredAnalysis(aiResponse)
+                    : geminiCodec.decodeAnalysis(aiResponse);
+            parseSuccesses.increment();
+            Recommendation recommendation = buildRecommendation(activity, analysis);
+            recommendationCache.store(activity, recommendation);
+            return recommendation;
 
         } catch (Exception e) {
-            e.printStackTrace();
-            return createDefaultRecommendation(activity);
+            parseFailures.increment();
+            log.warn("Unable to parse AI response for activity {}", activity.getId(), e);
+            return createFallbackRecommendation(activity);
         }
 
     }
 
-    private Recommendation createDefaultRecommendation(Activity activity) {
+    private Map<String, Recommendation> processBatchAIResponse(List<Activity> activities, String aiResponse) {
+
+        Map<String, Recommendation> recommendations = new HashMap<>();
+        try {
+            Map<String, Activity> activitiesById = new HashMap<>();
+            activities.forEach(activity -> activitiesById.put(activity.getId(), activity));
+
+            List<AiAnalysis> replies = geminiService.isStructuredOutput()
+                    ? geminiCodec.decodeStructuredBatch(aiResponse)
+                    : geminiCodec.decodeBatch(aiResponse);
+            parseSuccesses.increment();
+            for (AiAnalysis reply : replies) {
+                Activity activity = activitiesById.get(reply.getActivityId());
+                if (activity != null) {
+                    Recommendation recommendation = buildRecommendation(activity, reply);
+                    recommendationCache.store(activity, recommendation);
+                    recommendations.put(activity.getId(), recommendation);
+                }
+            }
+        } catch (Exception e) {
+            parseFailures.increment();
+            log.warn("Unable to parse batch response for {} activities", activities.size(), e);
+        }
+        return recommendations;
+    }
+
+    private Recommendation buildRecommendation(Activity activity, AiAnalysis aiAnalysis) {
+        StringBuilder fullAnalysis = new StringBuilder();
+        AiAnalysis.Analysis analysis = aiAnalysis.getAnalysis();
+        if (analysis != null) {
+            addAnalysisSection(fullAnalysis, analysis.getOverall(), "Overall: ");
+            addAnalysisSection(fullAnalysis, analysis.getPace(), "Pace: ");
+            addAnalysisSection(fullAnalysis, analysis.getHeartRate(), "Heart Rate: ");
+            addAnalysisSection(fullAnalysis, analysis.getCaloriesBurned(), "Calories: ");
+        }
+
+        List<String> improvements = extractImprovements(aiAnalysis.getImprovements());
+        List<String> suggestions = extractSuggestions(aiAnalysis.getSuggestions());
+        List<String> safety = extractSafetyGuidelines(aiAnalysis.getSafety());
+
         return Recommendation.builder()
                 .activityId(activity.getId())
                 .userId(activity.getUserId())
                 .activityType(activity.getActivityType())
-                .recommendation("Unable to generate detailed analysis")
-                .improvements(Collections.singletonList("Continue with your current routine"))
-                .suggestions(Collections.singletonList("Consider consulting a fitness professional"))
-                .safety(Arrays.asList(
-                        "Always warm up before exercise",
-                        "Stay hydrated",
-                        "Listen to your body"
-                ))
+                .recommendation(fullAnalysis.toString().trim())
+                .improvements(improvements)
+                .suggestions(suggestions)
+                .safety(safety)
+                .promptVersion(promptBuilder.version())
+                .source(Recommendation.SOURCE_GEMINI)
                 .createdAt(LocalDateTime.now())
                 .build();
     }
 
-    private List<String> extractSafetyGuidelines(JsonNode safetyGuidelines) {
+    private Recommendation createFallbackRecommendation(Activity activity) {
+        fallbackRecommendations.increment();
+        return ruleEngine.evaluate(activity);
+    }
 
-        List<String> safetyList = new ArrayList<>();
-        if (safetyGuidelines.isArray()) {
-            safetyGuidelines.forEach(safetyNode -> safetyList.add(safetyNode.asText()));
-        }
-        return safetyList.isEmpty() ?
+    private List<String> extractSafetyGuidelines(List<String> safetyGuidelines) {
+
+        return safetyGuidelines == null || safetyGuidelines.isEmpty() ?
                 Collections.singletonList("Follow general safety guidelines")
-                : safetyList;
+                : safetyGuidelines;
 
     }
 
-    private List<String> extractSuggestions(JsonNode suggestions) {
+    private List<String> extractSuggestions(List<AiAnalysis.Suggestion> suggestions) {
 
-        List<String> suggestionList = new ArrayList<>();
-        if (suggestions.isArray()) {
-            suggestions.forEach(suggestionNode -> {
-                String workout = suggestionNode.path("workout").asText();
-                String description = suggestionNode.path("description").asText();
-                suggestionList.add(String.format("%s (%s)", description, workout));
-            });
+        if (suggestions == null || suggestions.isEmpty()) {
+            return Collections.singletonList("No specific suggestions provided");
         }
-        return suggestionList.isEmpty() ?
-                Collections.singletonList("No specific suggestions provided")
-                : suggestionList;
+        List<String> suggestionList = new ArrayList<>(suggestions.size());
+        suggestions.forEach(suggestion -> suggestionList.add(suggestion.toDisplayString()));
+        return suggestionList;
     }
 
-    private List<String> extractImprovements(JsonNode improvements) {
-
-        List<String> improvementList = new ArrayList<>();
+    private List<String> extractImprovements(List<AiAnalysis.Improvement> improvements) {
 
-        if (improvements.isArray()) {
-            improvements.forEach(improvementNode -> {
-                String area = improvementNode.path("area").asText();
-                String detail = improvementNode.path("recommendation").asText();
-                improvementList.add(String.format("%s: %s", area, detail));
-            });
+        if (improvements == null || improvements.isEmpty()) {
+            return Collections.singletonList("No specific improvements provided");
         }
-        return improvementList.isEmpty() ?
-                Collections.singletonList("No specific improvements provided")
-                : improvementList;
+        List<String> improvementList = new ArrayList<>(improvements.size());
+        improvements.forEach(improvement -> improvementList.add(improvement.toDisplayString()));
+        return improvementList;
     }
 
-    private void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNode, String key, String prefix) {
+    private void addAnalysisSection(StringBuilder fullAnalysis, String value, String prefix) {
 
-        if (!analysisNode.path(key).isMissingNode()){
+        if (value != null){
             fullAnalysis.append(prefix)
-                    .append(analysisNode.path(key).asText())
+                    .append(value)
                     .append("\n\n");
         }
     }
-
-    private String createPromptForActivity(Activity activity) {
-        return String.format(""" 
-                  Analyze this fitness activity and provide detailed recommendations in the following format
-                  {
-                      "analysis" : {
-                          "overall": "Overall analysis here",
-                          "pace": "Pace analysis here",
-                          "heartRate": "Heart rate analysis here",
-                          "caloriesBurned": "Calories Burned here"
-                      },
-                      "improvements": [
-                          {
-                              "area": "Area name",
-                              "recommendation": "Detailed Recommendation"
-                          }
-                      ],
-                      "suggestions" : [
-                          {
-                              "workout": "Workout name",
-                              "description": "Detailed workout description"
-                          }
-                      ],
-                      "safety": [
-                          "Safety point 1",
-                          "Safety point 2"
-                      ]
-                  }
-                
-                  Analyze this activity:
-                  Activity Type: %s
-                  Duration: %d minutes
-                  Calories Burned: %d
-                  Additional Metrics: %s
-                
-                  Provide detailed analysis focusing on performance, improvements, next workout suggestions, and safety guidelines
-                  Ensure the response follows the EXACT JSON format shown above.
-                """,
-                        activity.getActivityType(),
-                        activity.getDuration(),
-                        activity.getCaloriesBurned(),
-                        activity.getAdditionalMetrics()
-        );
-    }
 }
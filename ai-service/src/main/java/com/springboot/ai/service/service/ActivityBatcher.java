@@ -0,0 +1,114 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.model.Activity;
+import com.springboot.ai.service.model.Recommendation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Collects activities for up to {@code maxWait} or {@code maxBatchSize} entries and hands them to a
+ * single batch call. Activities missing from the batch reply, or left without one because the reply
+ * could not be used, are retried one by one. Errors matching {@code passThrough} (Gemini overloaded
+ * or unavailable) are handed to every entry instead, since single calls would only add load.
+ */
+@Slf4j
+public class ActivityBatcher {
+
+    private final Sinks.Many<BatchEntry> entries = Sinks.many().unicast().onBackpressureBuffer();
+    private final Function<List<Activity>, Mono<Map<String, Recommendation>>> batchCall;
+    private final Function<Activity, Mono<Recommendation>> singleCall;
+    private final Predicate<Throwable> passThrough;
+    private final DistributionSummary batchSize;
+    private final Timer latencyPerActivity;
+    private final Counter fallbacks;
+    private final Disposable subscription;
+
+    public ActivityBatcher(int maxBatchSize, Duration maxWait, int maxConcurrentBatches,
+                           Function<List<Activity>, Mono<Map<String, Recommendation>>> batchCall,
+                           Function<Activity, Mono<Recommendation>> singleCall,
+                           Predicate<Throwable> passThrough,
+                           MeterRegistry meterRegistry) {
+        this.batchCall = batchCall;
+        this.singleCall = singleCall;
+        this.passThrough = passThrough;
+        this.batchSize = DistributionSummary.builder("ai.batch.size")
+                .description("Activities sent per Gemini request")
+                .register(meterRegistry);
+        this.latencyPerActivity = Timer.builder("ai.batch.latency.per.activity")
+                .description("Gemini batch latency divided by batch size")
+                .register(meterRegistry);
+        this.fallbacks = Counter.builder("ai.batch.fallbacks")
+                .description("Activities retried individually after an incomplete batch reply")
+                .register(meterRegistry);
+        this.subscription = entries.asFlux()
+                // Fair backpressure holds a timed-out batch until a slot frees up instead of overflowing
+                .bufferTimeout(maxBatchSize, maxWait, true)
+                .flatMap(this::process, maxConcurrentBatches)
+                .subscribe();
+    }
+
+    public Mono<Recommendation> submit(Activity activity) {
+        Sinks.One<Recommendation> result = Sinks.one();
+        entries.emitNext(new BatchEntry(activity, result), Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        return result.asMono();
+    }
+
+    public void shutdown() {
+        subscription.dispose();
+    }
+
+    private Mono<Void> process(List<BatchEntry> batch) {
+        batchSize.record(batch.size());
+        if (batch.size() == 1) {
+            return complete(batch.get(0), singleCall.apply(batch.get(0).activity()));
+        }
+
+        List<Activity> activities = batch.stream().map(BatchEntry::activity).toList();
+        long start = System.nanoTime();
+        return batchCall.apply(activities)
+                .doOnNext(replies -> latencyPerActivity.record(
+                        Duration.ofNanos((System.nanoTime() - start) / batch.size())))
+                .onErrorResume(passThrough, e -> {
+                    batch.forEach(entry -> entry.result().tryEmitError(e));
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> {
+                    log.warn("Batch of {} activities failed, falling back to single calls", batch.size(), e);
+                    return Mono.just(Map.of());
+                })
+                .flatMapMany(replies -> Flux.fromIterable(batch)
+                        .flatMap(entry -> {
+                            Recommendation recommendation = replies.get(entry.activity().getId());
+                            if (recommendation != null) {
+                                return complete(entry, Mono.just(recommendation));
+                            }
+                            fallbacks.increment();
+                            return complete(entry, singleCall.apply(entry.activity()));
+                        }))
+                .then();
+    }
+
+    private Mono<Void> complete(BatchEntry entry, Mono<Recommendation> recommendation) {
+        return recommendation
+                .doOnNext(entry.result()::tryEmitValue)
+                .doOnError(entry.result()::tryEmitError)
+                .onErrorComplete()
+                .then(Mono.fromRunnable(entry.result()::tryEmitEmpty));
+    }
+
+    private record BatchEntry(Activity activity, Sinks.One<Recommendation> result) {
+    }
+}
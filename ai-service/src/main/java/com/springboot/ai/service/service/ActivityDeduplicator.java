@@ -0,0 +1,95 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.cache.LruTtlCache;
+import com.springboot.ai.service.model.Recommendation;
+import com.springboot.ai.service.repository.RecommendationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs the recommendation pipeline at most once per activity. Activities processed recently are
+ * skipped from memory, older ones by checking the store, and concurrent redeliveries of the same
+ * activity subscribe to the one pipeline already in flight.
+ */
+@Service
+@Slf4j
+public class ActivityDeduplicator {
+
+    private final RecommendationRepository recommendationRepository;
+    private final boolean checkStore;
+    private final LruTtlCache<String, Boolean> recentlyProcessed;
+    private final Map<String, Mono<Recommendation>> inFlight = new ConcurrentHashMap<>();
+    private final Counter memoryDuplicates;
+    private final Counter storeDuplicates;
+    private final Counter inFlightDuplicates;
+
+    public ActivityDeduplicator(RecommendationRepository recommendationRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${ai.dedup.check-store:true}") boolean checkStore,
+                                @Value("${ai.dedup.recent.max-entries:100000}") int maxEntries,
+                                @Value("${ai.dedup.recent.ttl:PT24H}") Duration ttl) {
+        this.recommendationRepository = recommendationRepository;
+        this.checkStore = checkStore;
+        this.recentlyProcessed = new LruTtlCache<>(maxEntries, ttl, () -> {});
+        this.memoryDuplicates = duplicates(meterRegistry, "memory");
+        this.storeDuplicates = duplicates(meterRegistry, "store");
+        this.inFlightDuplicates = duplicates(meterRegistry, "inflight");
+    }
+
+    /**
+     * @return the stored recommendation, or empty if this activity was already processed
+     */
+    public Mono<Recommendation> processOnce(String activityId, Supplier<Mono<Recommendation>> pipeline) {
+        if (recentlyProcessed.get(activityId) != null) {
+            memoryDuplicates.increment();
+            log.info("Skipping already processed activity {}", activityId);
+            return Mono.empty();
+        }
+
+        boolean[] started = {false};
+        Mono<Recommendation> shared = inFlight.computeIfAbsent(activityId, id -> {
+            started[0] = true;
+            return alreadyStored(id)
+                    .flatMap(stored -> stored ? Mono.<Recommendation>empty() : pipeline.get())
+                    .doOnNext(saved -> recentlyProcessed.put(id, Boolean.TRUE))
+                    .doFinally(signal -> inFlight.remove(id))
+                    .cache();
+        });
+        if (!started[0]) {
+            inFlightDuplicates.increment();
+            log.info("Activity {} is already being processed, sharing its result", activityId);
+        }
+        return shared;
+    }
+
+    private Mono<Boolean> alreadyStored(String activityId) {
+        if (!checkStore) {
+            return Mono.just(false);
+        }
+        return Mono.fromCallable(() -> recommendationRepository.existsByActivityId(activityId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(stored -> {
+                    if (stored) {
+                        storeDuplicates.increment();
+                        recentlyProcessed.put(activityId, Boolean.TRUE);
+                        log.info("Skipping activity {} with a stored recommendation", activityId);
+                    }
+                });
+    }
+
+    private static Counter duplicates(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("ai.dedup.duplicates")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
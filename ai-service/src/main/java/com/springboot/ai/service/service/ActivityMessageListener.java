@@ -1,30 +1,193 @@
 package com.springboot.ai.service.service;
 
+import com.rabbitmq.client.Channel;
+import com.springboot.ai.service.event.RecommendationStoredEvent;
+import com.springboot.ai.service.limit.FairScheduler;
+import com.springboot.ai.service.limit.GeminiRateLimiter;
+import com.springboot.ai.service.limit.Lane;
+import com.springboot.ai.service.metrics.PipelineMetrics;
 import com.springboot.ai.service.model.Activity;
 import com.springboot.ai.service.model.Recommendation;
-import com.springboot.ai.service.repository.RecommendationRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class ActivityMessageListener {
 
+    // Set by activity-service's ActivityPublisher
+    private static final String PUBLISHED_AT_HEADER = "x-published-at";
+    private static final String TRACE_ID_HEADER = "x-trace-id";
+
     private final ActivityAIService activityAIService;
-    private final RecommendationRepository recommendationRepository;
+    private final RecommendationWriter recommendationWriter;
+    private final ActivityDeduplicator activityDeduplicator;
+    private final RecommendationStreamService recommendationStreamService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final GeminiRateLimiter geminiRateLimiter;
+    private final FairScheduler fairScheduler;
+    private final PipelineMetrics pipelineMetrics;
+    private final boolean concurrent;
+    private final Semaphore inFlight;
+    private final Semaphore bulkInFlight;
+
+    public ActivityMessageListener(ActivityAIService activityAIService,
+                                   RecommendationWriter recommendationWriter,
+                                   ActivityDeduplicator activityDeduplicator,
+                                   RecommendationStreamService recommendationStreamService,
+                                   ApplicationEventPublisher eventPublisher,
+                                   GeminiRateLimiter geminiRateLimiter,
+                                   FairScheduler fairScheduler,
+                                   PipelineMetrics pipelineMetrics,
+                                   @Value("${ai.pipeline.concurrent:true}") boolean concurrent,
+                                   @Value("${ai.pipeline.max-in-flight:32}") int maxInFlight,
+                                   @Value("${ai.lanes.interactive-share:0.25}") double interactiveShare) {
+        this.activityAIService = activityAIService;
+        this.recommendationWriter = recommendationWriter;
+        this.activityDeduplicator = activityDeduplicator;
+        this.recommendationStreamService = recommendationStreamService;
+        this.eventPublisher = eventPublisher;
+        this.geminiRateLimiter = geminiRateLimiter;
+        this.fairScheduler = fairScheduler;
+        this.pipelineMetrics = pipelineMetrics;
+        this.concurrent = concurrent;
+        this.inFlight = new Semaphore(maxInFlight);
+        // Bulk deliveries may never hold the in-flight slots reserved for interactive work
+        this.bulkInFlight = new Semaphore(Math.max(1, (int) (maxInFlight * (1 - interactiveShare))));
+    }
+
+    @RabbitListener(queues = "activity.queue", ackMode = "MANUAL",
+            concurrency = "${ai.pipeline.listener-concurrency:1}")
+    public void processActivity(Activity activity, Channel channel,
+                                @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                                @Header(name = PUBLISHED_AT_HEADER, required = false) Long publishedAt,
+                                @Header(name = TRACE_ID_HEADER, required = false) String traceId) throws InterruptedException {
+        process(activity, channel, deliveryTag, Lane.INTERACTIVE, publishedAt, traceId);
+    }
+
+    @RabbitListener(queues = "activity.bulk.queue", ackMode = "MANUAL",
+            concurrency = "${ai.pipeline.bulk-listener-concurrency:1}")
+    public void processBulkActivity(Activity activity, Channel channel,
+                                    @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                                    @Header(name = PUBLISHED_AT_HEADER, required = false) Long publishedAt,
+                                    @Header(name = TRACE_ID_HEADER, required = false) String traceId) throws InterruptedException {
+        process(activity, channel, deliveryTag, Lane.BULK, publishedAt, traceId);
+    }
+
+    private void process(Activity activity, Channel channel, long deliveryTag, Lane lane,
+                         Long publishedAt, String traceId) throws InterruptedException {
+        log.info("Received {} activity for processing: {} (trace {})", lane, activity.getId(), traceId);
+        long token = pipelineMetrics.received(publishedAt);
 
-    @RabbitListener(queues = "activity.queue")
-    public void processActivity(Activity activity) {
-        log.info("Received activity for processing: {}",activity.getId());
-//        log.info("Generated Recommendation: {}",activityAIService.generateRecommendation(activity));
+        if (fairScheduler.isEnabled()) {
+            // Start order, in-flight slots and limiter backpressure are the scheduler's job;
+            // this only blocks once its per-user buffers are full
+            fairScheduler.submit(activity.getUserId(), lane, () -> pipeline(activity, channel, deliveryTag, lane, token));
+            return;
+        }
 
-        Recommendation recommendation = activityAIService.generateRecommendation(activity);
-        recommendationRepository.save(recommendation);
+        // Blocks the listener thread once max-in-flight calls are running, or while Gemini calls
+        // are queued behind the rate limiter, which stops the broker from delivering past the
+        // prefetch window until capacity frees up.
+        geminiRateLimiter.awaitCapacity(lane);
+        if (lane == Lane.BULK) {
+            bulkInFlight.acquire();
+        }
+        inFlight.acquire();
 
+        Mono<Recommendation> pipeline = pipeline(activity, channel, deliveryTag, lane, token)
+                .doFinally(signal -> {
+                    inFlight.release();
+                    if (lane == Lane.BULK) {
+                        bulkInFlight.release();
+                    }
+                });
+
+        if (concurrent) {
+            pipeline.subscribe(saved -> {}, e -> {});
+        } else {
+            pipeline.onErrorComplete().block();
+        }
     }
 
+    private Mono<Recommendation> pipeline(Activity activity, Channel channel, long deliveryTag, Lane lane, long token) {
+        // Each delivery acks its own tag; duplicates complete empty and are acked without work
+        return activityDeduplicator.processOnce(activity.getId(),
+                        () -> activityAIService.generateRecommendation(activity)
+                                .flatMap(recommendation -> pipelineMetrics.time(PipelineMetrics.Stage.SAVE,
+                                        recommendationWriter.write(recommendation)))
+                                .doOnNext(saved -> {
+                                    eventPublisher.publishEvent(new RecommendationStoredEvent(saved));
+                                    if (activityAIService.isFastPath() && Recommendation.SOURCE_RULES.equals(saved.getSource())) {
+                                        enrich(activity);
+                                    }
+                                }))
+                .doOnSuccess(saved -> {
+                    ack(channel, deliveryTag);
+                    pipelineMetrics.finished(token, saved != null);
+                })
+                .doOnError(e -> {
+                    reject(channel, deliveryTag, activity, e);
+                    pipelineMetrics.finished(token, false);
+                })
+                .doOnCancel(() -> pipelineMetrics.finished(token, false))
+                .contextWrite(lane.asContext());
+    }
 
+    // The rule-based answer is already stored; Gemini replaces it in the background on
+    // the bulk lane, so enrichment never competes with interactive first answers
+    private void enrich(Activity activity) {
+        activityAIService.enrich(activity)
+                .flatMap(recommendationWriter::write)
+                .doOnNext(enriched -> eventPublisher.publishEvent(new RecommendationStoredEvent(enriched)))
+                .contextWrite(Lane.BULK.asContext())
+                .subscribe(null, e -> log.warn("Failed to enrich recommendation for activity {}", activity.getId(), e));
+    }
+
+    private void ack(Channel channel, long deliveryTag) {
+        try {
+            synchronized (channel) {
+                channel.basicAck(deliveryTag, false);
+            }
+        } catch (IOException e) {
+            log.error("Failed to ack delivery {}", deliveryTag, e);
+        }
+    }
+
+    private void reject(Channel channel, long deliveryTag, Activity activity, Throwable error) {
+        boolean requeue = isTransient(error);
+        log.error("Failed to process activity {} (requeue={})", activity.getId(), requeue, error);
+        recommendationStreamService.abort(activity.getId());
+        try {
+            synchronized (channel) {
+                channel.basicNack(deliveryTag, false, requeue);
+            }
+        } catch (IOException e) {
+            log.error("Failed to nack delivery {}", deliveryTag, e);
+        }
+    }
+
+    private boolean isTransient(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == 429 || response.getStatusCode().is5xxServerError();
+        }
+        // Failed writes are redelivered so a recommendation is never acked without being stored
+        if (error instanceof DataAccessException) {
+            return !(error instanceof DuplicateKeyException);
+        }
+        return error instanceof WebClientRequestException;
+    }
 }
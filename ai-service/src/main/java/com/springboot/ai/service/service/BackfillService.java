@@ -0,0 +1,325 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.dto.BackfillStatus;
+import com.springboot.ai.service.event.RecommendationStoredEvent;
+import com.springboot.ai.service.limit.Lane;
+import com.springboot.ai.service.model.Activity;
+import com.springboot.ai.service.model.BackfillCheckpoint;
+import com.springboot.ai.service.prompt.PromptBuilder;
+import com.springboot.ai.service.repository.BackfillCheckpointRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Regenerates recommendations for historical activities. Activities are read from
+ * activity-service's collection with a cursor in _id order, a page at a time; activities whose
+ * recommendation already carries the current prompt version are skipped and the rest go through
+ * the normal pipeline on the bulk lane. The last _id of every finished page is checkpointed, so a
+ * restart or resume continues from there. Activities that failed are kept in the checkpoint and
+ * retried first on the next run; a run stops once more than {@code max-failed} are outstanding,
+ * since that many failures point at a problem a retry will not fix.
+ */
+@Service
+@Slf4j
+public class BackfillService {
+
+    private static final String CHECKPOINT_ID = "activities";
+
+    private enum State { IDLE, RUNNING, PAUSED, COMPLETED, FAILED }
+
+    private final ActivityAIService activityAIService;
+    private final RecommendationWriter recommendationWriter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MongoTemplate mongoTemplate;
+    private final BackfillCheckpointRepository checkpointRepository;
+    private final PromptBuilder promptBuilder;
+    private final String activitiesUri;
+    private final int pageSize;
+    private final int parallelism;
+    private final int maxFailed;
+
+    private SimpleMongoClientDatabaseFactory activityDatabaseFactory;
+    private MongoTemplate activityTemplate;
+    private Disposable run;
+    private volatile State state = State.IDLE;
+    private volatile String lastActivityId;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong remaining = new AtomicLong();
+    // Outstanding failures of this prompt version; their count is failed
+    private final Set<String> failedIds = ConcurrentHashMap.newKeySet();
+    private volatile long runStartedAt;
+    private volatile long handledAtRunStart;
+
+    public BackfillService(ActivityAIService activityAIService,
+                           RecommendationWriter recommendationWriter,
+                           ApplicationEventPublisher eventPublisher,
+                           MongoTemplate mongoTemplate,
+                           BackfillCheckpointRepository checkpointRepository,
+                           PromptBuilder promptBuilder,
+                           @Value("${ai.backfill.activities-uri:mongodb://localhost:27017/fitness_activity_db}") String activitiesUri,
+                           @Value("${ai.backfill.page-size:100}") int pageSize,
+                           @Value("${ai.backfill.parallelism:8}") int parallelism,
+                           @Value("${ai.backfill.max-failed:1000}") int maxFailed) {
+        this.activityAIService = activityAIService;
+        this.recommendationWriter = recommendationWriter;
+        this.eventPublisher = eventPublisher;
+        this.mongoTemplate = mongoTemplate;
+        this.checkpointRepository = checkpointRepository;
+        this.promptBuilder = promptBuilder;
+        this.activitiesUri = activitiesUri;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.maxFailed = maxFailed;
+    }
+
+    public synchronized BackfillStatus start() {
+        if (state == State.RUNNING) {
+            return status();
+        }
+        MongoTemplate activityTemplate = activityTemplate();
+
+        int version = promptBuilder.version();
+        BackfillCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT_ID)
+                .filter(found -> found.getPromptVersion() == version)
+                .orElseGet(() -> BackfillCheckpoint.builder().id(CHECKPOINT_ID).promptVersion(version).build());
+        lastActivityId = checkpoint.getLastActivityId();
+        List<String> retries = checkpoint.getFailedActivityIds() == null ? List.of() : checkpoint.getFailedActivityIds();
+        failedIds.clear();
+        failedIds.addAll(retries);
+        processed.set(checkpoint.getProcessed());
+        skipped.set(checkpoint.getSkipped());
+        failed.set(failedIds.size());
+        remaining.set(activityTemplate.count(activitiesAfter(lastActivityId), "activities") + retries.size());
+        handledAtRunStart = processed.get() + skipped.get() + failed.get();
+        runStartedAt = System.nanoTime();
+        state = State.RUNNING;
+        log.info("Starting backfill for prompt version {} after activity {} ({} remaining, {} to retry)",
+                version, lastActivityId, remaining.get(), retries.size());
+
+        // Earlier failures first; they do not move the cursor
+        Flux<Void> retried = Mono.fromCallable(() -> loadRetries(activityTemplate, retries))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable)
+                .buffer(pageSize)
+                .concatMap(page -> processPage(page, version, false), 1);
+        Query query = activitiesAfter(lastActivityId)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .cursorBatchSize(pageSize);
+        Flux<Void> remainder = Flux.using(() -> activityTemplate.stream(query, Document.class, "activities"),
+                        Flux::fromStream, Stream::close)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(this::toActivity)
+                .buffer(pageSize)
+                // One page at a time, so memory stays at roughly two pages whatever the collection size
+                .concatMap(page -> processPage(page, version, true), 1);
+        run = Flux.concat(retried, remainder)
+                .contextWrite(Lane.BULK.asContext())
+                .subscribe(null,
+                        error -> {
+                            log.error("Backfill failed after activity {}", lastActivityId, error);
+                            state = State.FAILED;
+                        },
+                        () -> {
+                            log.info("Backfill completed: {} processed, {} skipped, {} failed",
+                                    processed.get(), skipped.get(), failed.get());
+                            state = State.COMPLETED;
+                        });
+        return status();
+    }
+
+    public synchronized BackfillStatus pause() {
+        if (state == State.RUNNING) {
+            run.dispose();
+            state = State.PAUSED;
+            log.info("Backfill paused after activity {}", lastActivityId);
+        }
+        return status();
+    }
+
+    public BackfillStatus status() {
+        long handled = processed.get() + skipped.get() + failed.get() - handledAtRunStart;
+        double elapsedSeconds = (System.nanoTime() - runStartedAt) / 1e9;
+        double rate = state == State.IDLE || elapsedSeconds <= 0 ? 0 : handled / elapsedSeconds;
+        return BackfillStatus.builder()
+                .state(state.name())
+                .promptVersion(promptBuilder.version())
+                .lastActivityId(lastActivityId)
+                .processed(processed.get())
+                .skipped(skipped.get())
+                .failed(failed.get())
+                .remaining(remaining.get())
+                .activitiesPerSecond(rate)
+                .eta(rate > 0 ? Duration.ofSeconds((long) (remaining.get() / rate)) : null)
+                .build();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (run != null) {
+            run.dispose();
+        }
+        if (activityDatabaseFactory != null) {
+            try {
+                activityDatabaseFactory.destroy();
+            } catch (Exception e) {
+                log.warn("Failed to close the activities database connection", e);
+            }
+        }
+    }
+
+    MongoTemplate activityTemplate() {
+        if (activityTemplate == null) {
+            activityDatabaseFactory = new SimpleMongoClientDatabaseFactory(activitiesUri);
+            activityTemplate = new MongoTemplate(activityDatabaseFactory);
+        }
+        return activityTemplate;
+    }
+
+    /**
+     * @param advance whether the page comes from the cursor and moves the checkpoint past it
+     */
+    private Mono<Void> processPage(List<Activity> page, int version, boolean advance) {
+        return Mono.fromCallable(() -> upToDate(page, version))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(current -> Flux.fromIterable(page)
+                        .flatMap(activity -> {
+                            if (current.contains(activity.getId())) {
+                                skipped.incrementAndGet();
+                                remaining.decrementAndGet();
+                                succeeded(activity.getId());
+                                return Mono.empty();
+                            }
+                            return regenerate(activity);
+                        }, parallelism))
+                .then(Mono.fromRunnable(() -> checkpoint(advance ? page.get(page.size() - 1).getId() : lastActivityId, version))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .then(Mono.defer(() -> failedIds.size() > maxFailed
+                        ? Mono.error(new IllegalStateException(failedIds.size() + " activities failed, stopping"))
+                        : Mono.empty()));
+    }
+
+    // Activities deleted since they failed are dropped from the retries
+    private List<Activity> loadRetries(MongoTemplate activityTemplate, List<String> retries) {
+        if (retries.isEmpty()) {
+            return List.of();
+        }
+        Query query = Query.query(Criteria.where("_id").in(retries.stream().map(ObjectId::new).toList()))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        List<Activity> activities = activityTemplate.find(query, Document.class, "activities").stream()
+                .map(this::toActivity)
+                .toList();
+        Set<String> found = new HashSet<>();
+        activities.forEach(activity -> found.add(activity.getId()));
+        retries.stream().filter(id -> !found.contains(id)).forEach(id -> {
+            succeeded(id);
+            remaining.decrementAndGet();
+        });
+        return activities;
+    }
+
+    private void succeeded(String activityId) {
+        if (failedIds.remove(activityId)) {
+            failed.decrementAndGet();
+        }
+    }
+
+    private Mono<Void> regenerate(Activity activity) {
+        return activityAIService.generateAiRecommendation(activity)
+                // A fallback must not replace an earlier real analysis; it is retried on the next run
+                .filter(recommendation -> recommendation.getPromptVersion() != null)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("No analysis generated")))
+                .flatMap(recommendationWriter::write)
+                .doOnNext(saved -> {
+                    eventPublisher.publishEvent(new RecommendationStoredEvent(saved));
+                    processed.incrementAndGet();
+                    succeeded(activity.getId());
+                })
+                .onErrorResume(e -> {
+                    log.warn("Backfill failed for activity {}", activity.getId(), e);
+                    if (failedIds.add(activity.getId())) {
+                        failed.incrementAndGet();
+                    }
+                    return Mono.empty();
+                })
+                .doFinally(signal -> remaining.decrementAndGet())
+                .then();
+    }
+
+    private Set<String> upToDate(List<Activity> page, int version) {
+        Query query = Query.query(Criteria.where("activityId").in(page.stream().map(Activity::getId).toList())
+                .and("promptVersion").gte(version));
+        query.fields().include("activityId");
+        Set<String> current = new HashSet<>();
+        mongoTemplate.find(query, Document.class, "recommendations")
+                .forEach(document -> current.add(document.getString("activityId")));
+        return current;
+    }
+
+    private void checkpoint(String activityId, int version) {
+        lastActivityId = activityId;
+        checkpointRepository.save(BackfillCheckpoint.builder()
+                .id(CHECKPOINT_ID)
+                .promptVersion(version)
+                .lastActivityId(activityId)
+                .failedActivityIds(List.copyOf(failedIds))
+                .processed(processed.get())
+                .skipped(skipped.get())
+                .failed(failed.get())
+                .updatedAt(LocalDateTime.now())
+                .build());
+    }
+
+    private Query activitiesAfter(String activityId) {
+        return activityId == null
+                ? new Query()
+                : Query.query(Criteria.where("_id").gt(new ObjectId(activityId)));
+    }
+
+    // activity-service's document layout: enum type as a string, additionalMetrics stored as "metrics"
+    @SuppressWarnings("unchecked")
+    private Activity toActivity(Document document) {
+        Activity activity = new Activity();
+        activity.setId(document.get("_id").toString());
+        activity.setUserId(document.getString("userId"));
+        activity.setActivityType(document.getString("activityType"));
+        activity.setDuration(document.getInteger("duration"));
+        activity.setCaloriesBurned(document.getInteger("caloriesBurned"));
+        activity.setStartTime(toLocalDateTime(document.get("startTime")));
+        activity.setAdditionalMetrics((Map<String, Object>) document.get("metrics"));
+        activity.setCreatedAt(toLocalDateTime(document.get("createdAt")));
+        activity.setUpdatedAt(toLocalDateTime(document.get("updatedAt")));
+        return activity;
+    }
+
+    private LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Date date ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null;
+    }
+}
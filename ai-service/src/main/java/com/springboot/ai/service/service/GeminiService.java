@@ -1,43 +1,235 @@
 package com.springboot.ai.service.service;
 
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.springboot.ai.service.codec.GeminiCodec;
+import com.springboot.ai.service.codec.ResponseSchema;
+import com.springboot.ai.service.limit.GeminiCircuitBreaker;
+import com.springboot.ai.service.limit.GeminiRateLimiter;
+import com.springboot.ai.service.limit.GeminiUnavailableException;
+import com.springboot.ai.service.limit.LatencyTracker;
+import com.springboot.ai.service.prompt.TokenEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class GeminiService {
 
     private final WebClient webClient;
+    private final GeminiCodec geminiCodec;
+    private final GeminiRateLimiter geminiRateLimiter;
+    private final GeminiCircuitBreaker geminiCircuitBreaker;
+    private final LatencyTracker latencyTracker = new LatencyTracker(1000, 0.95, 50);
+    private final TokenEstimator tokenEstimator;
+    private final MeterRegistry meterRegistry;
+    // Empty unless structured output is enabled
+    private final Map<ResponseSchema, SerializedString> generationConfigs = new EnumMap<>(ResponseSchema.class);
 
     @Value("${GEMINI_API_URL}")
     private String geminiUrl;
     @Value("${GEMINI_API_KEY}")
     private String geminiKey;
+    // Defaults to GEMINI_API_URL with :streamGenerateContent and alt=sse
+    @Value("${gemini.api.stream-url:}")
+    private String geminiStreamUrl;
+    @Value("${ai.limiter.expected-output-tokens:800}")
+    private int expectedOutputTokens;
+    @Value("${ai.limiter.max-retries:3}")
+    private int maxRetries;
+    @Value("${ai.limiter.retry-backoff:PT2S}")
+    private Duration retryBackoff;
+    @Value("${ai.gemini.deadline:PT30S}")
+    private Duration deadline;
+    @Value("${ai.gemini.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+    @Value("${ai.gemini.hedging.min-delay:PT2S}")
+    private Duration minHedgeDelay;
 
-    public GeminiService(WebClient.Builder webClientBuilder) {
+    public GeminiService(WebClient.Builder webClientBuilder, GeminiCodec geminiCodec, GeminiRateLimiter geminiRateLimiter,
+                         GeminiCircuitBreaker geminiCircuitBreaker, TokenEstimator tokenEstimator,
+                         MeterRegistry meterRegistry,
+                         @Value("${ai.gemini.structured-output.enabled:false}") boolean structuredOutput,
+                         @Value("${ai.gemini.structured-output.max-output-tokens:1024}") int maxOutputTokens,
+                         @Value("${ai.gemini.structured-output.batch-max-output-tokens:8192}") int batchMaxOutputTokens) {
         this.webClient = webClientBuilder.build();
+        this.geminiCodec = geminiCodec;
+        this.geminiRateLimiter = geminiRateLimiter;
+        this.geminiCircuitBreaker = geminiCircuitBreaker;
+        this.tokenEstimator = tokenEstimator;
+        this.meterRegistry = meterRegistry;
+        if (structuredOutput) {
+            generationConfigs.put(ResponseSchema.ANALYSIS, geminiCodec.generationConfig(ResponseSchema.ANALYSIS, maxOutputTokens));
+            generationConfigs.put(ResponseSchema.BATCH, geminiCodec.generationConfig(ResponseSchema.BATCH, batchMaxOutputTokens));
+        }
     }
 
-    public String getAnswer(String question) {
+    public boolean isStructuredOutput() {
+        return !generationConfigs.isEmpty();
+    }
+
+    public Mono<String> getAnswer(String question) {
+        return getAnswer(question, null);
+    }
+
+    /**
+     * @param schema reply shape to request when structured output is enabled; ignored otherwise
+     */
+    public Mono<String> getAnswer(String question, ResponseSchema schema) {
+
+        // Deferred so that only subscribed calls take a breaker permission
+        return Mono.defer(() -> {
+            GeminiCircuitBreaker.Permission permission = geminiCircuitBreaker.tryAcquire();
+            if (permission == null) {
+                recordOutcome("breaker_open", 0);
+                return Mono.error(new GeminiUnavailableException("Gemini circuit breaker is open"));
+            }
+
+            byte[] requestBody = geminiCodec.encodeRequest(question, generationConfigs.get(schema));
+            int estimatedTokens = estimateTokens(question);
+            long start = System.nanoTime();
+
+            Mono<Attempt> primary = call(requestBody, estimatedTokens).map(response -> new Attempt(response, "primary"));
+            Mono<Attempt> attempt = primary;
+            long hedgeDelay = hedgeDelayNanos();
+            if (hedgingEnabled && hedgeDelay > 0) {
+                Mono<Attempt> hedge = Mono.delay(Duration.ofNanos(hedgeDelay))
+                        .then(call(requestBody, estimatedTokens))
+                        .map(response -> new Attempt(response, "hedge"));
+                attempt = Mono.firstWithValue(primary, hedge)
+                        .onErrorMap(NoSuchElementException.class,
+                                e -> e.getSuppressed().length > 0 ? e.getSuppressed()[0] : e);
+            }
 
-        Map<String, Object> requestBody = Map.of(
-                "contents", new Object[] {
-                        Map.of("parts", new Object[] {
-                                Map.of("text",question)
-                        })
-                }
+            return attempt
+                    .doOnNext(result -> {
+                        long latency = System.nanoTime() - start;
+                        latencyTracker.record(latency);
+                        recordOutcome(result.outcome(), latency);
+                        permission.onSuccess();
+                    })
+                    .doOnError(e -> {
+                        recordOutcome(e instanceof TimeoutException ? "timeout" : "error", System.nanoTime() - start);
+                        reportError(permission, e);
+                    })
+                    .doOnCancel(permission::onCancel)
+                    .map(Attempt::response);
+        });
+    }
+
+    /**
+     * Calls the streaming endpoint and emits the text of each partial response as it arrives.
+     */
+    public Flux<String> streamAnswer(String question, ResponseSchema schema) {
+
+        return Flux.defer(() -> {
+            GeminiCircuitBreaker.Permission permission = geminiCircuitBreaker.tryAcquire();
+            if (permission == null) {
+                recordOutcome("breaker_open", 0);
+                return Flux.error(new GeminiUnavailableException("Gemini circuit breaker is open"));
+            }
+
+            byte[] requestBody = geminiCodec.encodeRequest(question, generationConfigs.get(schema));
+            return geminiRateLimiter.executeMany(estimateTokens(question), () -> webClient.post()
+                            .uri(streamUrl() + geminiKey)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .bodyValue(requestBody)
+                            .retrieve()
+                            .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                            // Deadline between chunks rather than for the whole stream
+                            .timeout(deadline))
+                    .doOnComplete(permission::onSuccess)
+                    .doOnError(e -> reportError(permission, e))
+                    .doOnCancel(permission::onCancel)
+                    .mapNotNull(ServerSentEvent::data)
+                    .handle((chunk, sink) -> {
+                        try {
+                            sink.next(geminiCodec.extractText(chunk));
+                        } catch (IOException e) {
+                            // Final chunks may carry only usage metadata and no text
+                        }
+                    });
+        });
+    }
+
+    private void reportError(GeminiCircuitBreaker.Permission permission, Throwable error) {
+        if (countsAsFailure(error)) {
+            permission.onFailure();
+        } else {
+            permission.onSuccess();
+        }
+    }
 
-        );
-        String response = webClient.post()
-                .uri(geminiUrl + geminiKey)
-                .header("Content-Type", "application/json")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(String.class)
-                .block();
+    private Mono<String> call(byte[] requestBody, int estimatedTokens) {
+        return geminiRateLimiter.execute(estimatedTokens, () -> webClient.post()
+                        .uri(geminiUrl + geminiKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .timeout(deadline))
+                .retryWhen(overloadRetry());
+    }
+
+    // Hedge after the observed p95, but never sooner than the configured minimum
+    private long hedgeDelayNanos() {
+        long p95 = latencyTracker.percentileNanos();
+        return p95 < 0 ? -1 : Math.max(p95, minHedgeDelay.toNanos());
+    }
+
+    // Client errors other than 429 say nothing about Gemini's health
+    private boolean countsAsFailure(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == 429 || response.getStatusCode().is5xxServerError();
+        }
+        return true;
+    }
+
+    private void recordOutcome(String outcome, long nanos) {
+        Timer.builder("ai.gemini.latency")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.ofNanos(nanos));
+    }
+
+    // Prompt tokens plus the expected reply
+    private int estimateTokens(String question) {
+        return tokenEstimator.estimate(question) + expectedOutputTokens;
+    }
+
+    // 429 and 5xx are retried with backoff; each attempt goes through the limiter again
+    private Retry overloadRetry() {
+        return Retry.backoff(maxRetries, retryBackoff)
+                .filter(e -> e instanceof WebClientResponseException response
+                        && (response.getStatusCode().value() == 429 || response.getStatusCode().is5xxServerError()))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private String streamUrl() {
+        if (!geminiStreamUrl.isBlank()) {
+            return geminiStreamUrl;
+        }
+        return geminiUrl.replace(":generateContent", ":streamGenerateContent")
+                .replace("?", "?alt=sse&");
+    }
 
-        return response;
+    private record Attempt(String response, String outcome) {
     }
 }
@@ -0,0 +1,66 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.event.RecommendationStoredEvent;
+import com.springboot.ai.service.model.Recommendation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Relays stored recommendations to every ai-service instance through the recommendation.events
+ * fanout exchange. Each instance pushes them to its own SSE subscribers, and instances other
+ * than the one that stored a recommendation also refresh their read caches and activity streams.
+ */
+@Service
+@Slf4j
+public class RecommendationBroadcaster {
+
+    private static final String EXCHANGE = "recommendation.events";
+    private static final String ORIGIN_HEADER = "x-origin";
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final RabbitTemplate rabbitTemplate;
+    private final UserRecommendationEvents userRecommendationEvents;
+    private final RecommendationService recommendationService;
+    private final RecommendationStreamService recommendationStreamService;
+
+    public RecommendationBroadcaster(RabbitTemplate rabbitTemplate,
+                                     UserRecommendationEvents userRecommendationEvents,
+                                     RecommendationService recommendationService,
+                                     RecommendationStreamService recommendationStreamService) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.userRecommendationEvents = userRecommendationEvents;
+        this.recommendationService = recommendationService;
+        this.recommendationStreamService = recommendationStreamService;
+    }
+
+    @EventListener
+    public void onRecommendationStored(RecommendationStoredEvent event) {
+        Recommendation recommendation = event.recommendation();
+        try {
+            rabbitTemplate.convertAndSend(EXCHANGE, "", recommendation, message -> {
+                message.getMessageProperties().setHeader(ORIGIN_HEADER, instanceId);
+                return message;
+            });
+        } catch (AmqpException e) {
+            // The recommendation is stored; subscribers only miss the push
+            log.warn("Failed to broadcast recommendation for activity {}", recommendation.getActivityId(), e);
+        }
+    }
+
+    @RabbitListener(queues = "#{recommendationEventsQueue.name}")
+    public void onBroadcast(Recommendation recommendation,
+                            @Header(name = ORIGIN_HEADER, required = false) String origin) {
+        userRecommendationEvents.publish(recommendation);
+        if (!instanceId.equals(origin)) {
+            recommendationService.onRecommendationStored(new RecommendationStoredEvent(recommendation));
+            recommendationStreamService.complete(recommendation);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.cache.LruTtlCache;
+import com.springboot.ai.service.config.PromptProperties;
+import com.springboot.ai.service.config.RecommendationCacheProperties;
+import com.springboot.ai.service.model.Activity;
+import com.springboot.ai.service.model.CachedRecommendation;
+import com.springboot.ai.service.model.Recommendation;
+import com.springboot.ai.service.repository.CachedRecommendationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Caches Gemini output by a normalized feature signature of the activity, so near-identical
+ * activities reuse an earlier analysis instead of paying for another call.
+ */
+@Service
+@Slf4j
+public class RecommendationCache {
+
+    private final RecommendationCacheProperties properties;
+    private final PromptProperties promptProperties;
+    private final CachedRecommendationRepository cachedRecommendationRepository;
+    private final LruTtlCache<String, CachedRecommendation> memoryTier;
+    private final Counter memoryHits;
+    private final Counter mongoHits;
+    private final Counter misses;
+    private final Counter readErrors;
+    private final Counter writeErrors;
+
+    public RecommendationCache(RecommendationCacheProperties properties,
+                               PromptProperties promptProperties,
+                               CachedRecommendationRepository cachedRecommendationRepository,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.promptProperties = promptProperties;
+        this.cachedRecommendationRepository = cachedRecommendationRepository;
+
+        Counter evictions = Counter.builder("ai.cache.evictions").register(meterRegistry);
+        this.memoryTier = new LruTtlCache<>(properties.getMaxEntries(), properties.getTtl(), evictions::increment);
+        this.memoryHits = Counter.builder("ai.cache.hits").tag("tier", "memory").register(meterRegistry);
+        this.mongoHits = Counter.builder("ai.cache.hits").tag("tier", "mongo").register(meterRegistry);
+        this.misses = Counter.builder("ai.cache.misses").register(meterRegistry);
+        this.readErrors = Counter.builder("ai.cache.errors").tag("operation", "read").register(meterRegistry);
+        this.writeErrors = Counter.builder("ai.cache.errors").tag("operation", "write").register(meterRegistry);
+        Gauge.builder("ai.cache.size", memoryTier, LruTtlCache::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public Mono<Recommendation> lookup(Activity activity) {
+        if (!properties.isEnabled()) {
+            return Mono.empty();
+        }
+        String key = featureKey(activity);
+        CachedRecommendation cached = memoryTier.get(key);
+        if (cached != null) {
+            memoryHits.increment();
+            return Mono.just(toRecommendation(activity, cached));
+        }
+        if (!properties.isMongoTier()) {
+            misses.increment();
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> cachedRecommendationRepository.findById(key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(properties.getMongoTimeout())
+                // The Mongo tier is an optimization; when it is down or slow, treat it as a miss
+                .onErrorResume(e -> {
+                    readErrors.increment();
+                    log.warn("Cache lookup failed for {}, treating as a miss: {}", key, e.toString());
+                    return Mono.just(Optional.empty());
+                })
+                .flatMap(found -> {
+                    if (found.isEmpty()) {
+                        misses.increment();
+                        return Mono.empty();
+                    }
+                    mongoHits.increment();
+                    memoryTier.put(key, found.get());
+                    return Mono.just(toRecommendation(activity, found.get()));
+                });
+    }
+
+    public void store(Activity activity, Recommendation recommendation) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        CachedRecommendation cached = CachedRecommendation.builder()
+                .featureKey(featureKey(activity))
+                .recommendation(recommendation.getRecommendation())
+                .improvements(recommendation.getImprovements())
+                .suggestions(recommendation.getSuggestions())
+                .safety(recommendation.getSafety())
+                .createdAt(LocalDateTime.now())
+                .build();
+        memoryTier.put(cached.getFeatureKey(), cached);
+
+        if (properties.isMongoTier()) {
+            Mono.fromRunnable(() -> cachedRecommendationRepository.save(cached))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .onErrorResume(e -> {
+                        writeErrors.increment();
+                        log.warn("Failed to store cached recommendation {}: {}", cached.getFeatureKey(), e.toString());
+                        return Mono.empty();
+                    })
+                    .subscribe();
+        }
+    }
+
+    String featureKey(Activity activity) {
+        String activityType = activity.getActivityType();
+        // Entries from an older prompt version must not satisfy lookups after a prompt change
+        StringBuilder key = new StringBuilder()
+                .append('v').append(promptProperties.getVersion())
+                .append('|').append(activityType)
+                .append("|d").append(bucket(activity.getDuration(), properties.durationBucketFor(activityType)))
+                .append("|c").append(bucket(activity.getCaloriesBurned(), properties.caloriesBucketFor(activityType)));
+
+        Map<String, Object> metrics = activity.getAdditionalMetrics();
+        if (metrics != null) {
+            new TreeMap<>(properties.getMetricBuckets()).forEach((field, width) -> {
+                if (metrics.get(field) instanceof Number value) {
+                    key.append('|').append(field).append(':')
+                            .append((long) Math.floor(value.doubleValue() / width));
+                }
+            });
+        }
+        return key.toString();
+    }
+
+    private String bucket(Integer value, int width) {
+        return value == null ? "-" : String.valueOf(value / Math.max(width, 1));
+    }
+
+    private Recommendation toRecommendation(Activity activity, CachedRecommendation cached) {
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getActivityType())
+                .recommendation(cached.getRecommendation())
+                .improvements(cached.getImprovements())
+                .suggestions(cached.getSuggestions())
+                .safety(cached.getSafety())
+                .promptVersion(promptProperties.getVersion())
+                .source(Recommendation.SOURCE_GEMINI)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -1,24 +1,221 @@
 package com.springboot.ai.service.service;
 
+import com.springboot.ai.service.cache.LruTtlCache;
+import com.springboot.ai.service.dto.CursorPage;
+import com.springboot.ai.service.dto.RecommendationSummary;
+import com.springboot.ai.service.event.RecommendationStoredEvent;
 import com.springboot.ai.service.model.Recommendation;
 import com.springboot.ai.service.repository.RecommendationRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 public class RecommendationService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id"));
+
     private final RecommendationRepository recommendationRepository;
+    private final MongoTemplate mongoTemplate;
+
+    // Stores on any instance refresh these through RecommendationStoredEvent, so entries can live until evicted
+    private final LruTtlCache<String, Recommendation> activityCache;
+    // Short-lived "not generated yet" markers so polling does not reach Mongo on every request
+    private final LruTtlCache<String, Boolean> missingActivities;
+    private final LruTtlCache<String, UserRecommendations> userCache;
+    // Version of each user's last store, oldest first. Bounded: users dropped from it read as
+    // versionFloor, the newest version dropped, which can only turn cached lists into misses.
+    private final LinkedHashMap<String, Long> userVersions = new LinkedHashMap<>();
+    private final int maxUserVersions;
+    private long versionFloor;
+    private long versionSequence;
+
+    private final Counter activityHits;
+    private final Counter negativeHits;
+    private final Counter userHits;
+    private final Counter misses;
+
+    public RecommendationService(RecommendationRepository recommendationRepository,
+                                 MongoTemplate mongoTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ai.read-cache.activity.max-entries:50000}") int activityMaxEntries,
+                                 @Value("${ai.read-cache.activity.max-weight:64000000}") long activityMaxWeight,
+                                 @Value("${ai.read-cache.activity.ttl:PT1H}") Duration activityTtl,
+                                 @Value("${ai.read-cache.negative.ttl:PT2S}") Duration negativeTtl,
+                                 @Value("${ai.read-cache.user.max-entries:5000}") int userMaxEntries,
+                                 @Value("${ai.read-cache.user.ttl:PT30S}") Duration userTtl,
+                                 @Value("${ai.read-cache.user.max-versions:20000}") int maxUserVersions) {
+        this.recommendationRepository = recommendationRepository;
+        this.maxUserVersions = maxUserVersions;
+        this.mongoTemplate = mongoTemplate;
+
+        Counter evictions = Counter.builder("ai.read-cache.evictions").register(meterRegistry);
+        this.activityCache = new LruTtlCache<>(activityMaxEntries, activityMaxWeight, activityTtl,
+                RecommendationService::weigh, evictions::increment);
+        this.missingActivities = new LruTtlCache<>(activityMaxEntries, negativeTtl, evictions::increment);
+        this.userCache = new LruTtlCache<>(userMaxEntries, userTtl, evictions::increment);
+
+        this.activityHits = Counter.builder("ai.read-cache.hits").tag("cache", "activity").register(meterRegistry);
+        this.negativeHits = Counter.builder("ai.read-cache.hits").tag("cache", "negative").register(meterRegistry);
+        this.userHits = Counter.builder("ai.read-cache.hits").tag("cache", "user").register(meterRegistry);
+        this.misses = Counter.builder("ai.read-cache.misses").register(meterRegistry);
+        Gauge.builder("ai.read-cache.weight", activityCache, LruTtlCache::weight).register(meterRegistry);
+    }
 
     public List<Recommendation> getUserRecommendation(String userId) {
-        return recommendationRepository.findByUserId(userId);
+        long version = userVersion(userId);
+        UserRecommendations cached = userCache.get(userId);
+        if (cached != null && cached.version() == version) {
+            userHits.increment();
+            return cached.recommendations();
+        }
+        misses.increment();
+        List<Recommendation> recommendations = List.copyOf(recommendationRepository.findByUserId(userId));
+        // Tagged with the version read before the query, so a store that lands meanwhile invalidates it
+        userCache.put(userId, new UserRecommendations(version, recommendations));
+        return recommendations;
+    }
+
+    @EventListener
+    public void onRecommendationStored(RecommendationStoredEvent event) {
+        Recommendation recommendation = event.recommendation();
+        bumpUserVersion(recommendation.getUserId());
+        userCache.remove(recommendation.getUserId());
+        missingActivities.remove(recommendation.getActivityId());
+        activityCache.put(recommendation.getActivityId(), recommendation);
+    }
+
+    private long userVersion(String userId) {
+        synchronized (userVersions) {
+            return userVersions.getOrDefault(userId, versionFloor);
+        }
+    }
+
+    private void bumpUserVersion(String userId) {
+        synchronized (userVersions) {
+            // Re-inserted so the map stays ordered by version
+            userVersions.remove(userId);
+            userVersions.put(userId, ++versionSequence);
+            Iterator<Map.Entry<String, Long>> oldest = userVersions.entrySet().iterator();
+            while (userVersions.size() > maxUserVersions) {
+                versionFloor = oldest.next().getValue();
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Keyset page of summaries, newest first. Filter and sort both use the userId+createdAt index.
+     */
+    public CursorPage<RecommendationSummary> getUserRecommendationSummaries(String userId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (cursor != null && !cursor.isBlank()) {
+            CursorPosition position = decodeCursor(cursor);
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").lt(position.createdAt()),
+                    Criteria.where("createdAt").is(position.createdAt()).and("_id").lt(position.id()));
+        }
+
+        Query query = new Query(criteria).with(NEWEST_FIRST).limit(pageSize + 1);
+        query.fields().include("activityId", "activityType", "createdAt");
+        List<RecommendationSummary> summaries = mongoTemplate.find(query, RecommendationSummary.class, "recommendations");
+
+        if (summaries.size() <= pageSize) {
+            return new CursorPage<>(summaries, null);
+        }
+        List<RecommendationSummary> page = summaries.subList(0, pageSize);
+        RecommendationSummary last = page.get(pageSize - 1);
+        return new CursorPage<>(page, encodeCursor(last.getCreatedAt(), last.getId()));
+    }
+
+    /**
+     * Streams all of a user's recommendations from a server-side cursor; the caller must close the stream.
+     */
+    public Stream<Recommendation> streamUserRecommendations(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId)).with(NEWEST_FIRST).cursorBatchSize(200);
+        return mongoTemplate.stream(query, Recommendation.class);
+    }
+
+    public Optional<Recommendation> findActivityRecommendation(String activityId) {
+        Recommendation cached = activityCache.get(activityId);
+        if (cached != null) {
+            activityHits.increment();
+            return Optional.of(cached);
+        }
+        if (missingActivities.get(activityId) != null) {
+            negativeHits.increment();
+            return Optional.empty();
+        }
+        misses.increment();
+        Optional<Recommendation> recommendation = recommendationRepository.findByActivityId(activityId);
+        recommendation.ifPresentOrElse(
+                found -> activityCache.put(activityId, found),
+                () -> missingActivities.put(activityId, Boolean.TRUE));
+        return recommendation;
+    }
+
+    private String encodeCursor(LocalDateTime createdAt, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CursorPosition decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (position.length != 2 || !ObjectId.isValid(position[1])) {
+                throw new InvalidCursorException(cursor);
+            }
+            return new CursorPosition(LocalDateTime.parse(position[0]), new ObjectId(position[1]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    private record CursorPosition(LocalDateTime createdAt, ObjectId id) {
+    }
+
+    // Approximate heap footprint: two bytes per character of the text fields plus a fixed overhead
+    private static long weigh(Recommendation recommendation) {
+        long chars = length(recommendation.getRecommendation());
+        for (List<String> list : List.of(listOrEmpty(recommendation.getImprovements()),
+                listOrEmpty(recommendation.getSuggestions()), listOrEmpty(recommendation.getSafety()))) {
+            for (String item : list) {
+                chars += length(item);
+            }
+        }
+        return 256 + 2 * chars;
+    }
+
+    private static long length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static List<String> listOrEmpty(List<String> list) {
+        return list == null ? List.of() : list;
     }
 
-    public Recommendation getActivityRecommendation(String activityId) {
-        return recommendationRepository.findByActivityId(activityId)
-                .orElseThrow(() -> new RuntimeException("No Recommendation found for activity: "+activityId));
+    private record UserRecommendations(long version, List<Recommendation> recommendations) {
     }
 }
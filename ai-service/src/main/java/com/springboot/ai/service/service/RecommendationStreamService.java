@@ -0,0 +1,76 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.event.RecommendationStoredEvent;
+import com.springboot.ai.service.model.Recommendation;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fans out partial Gemini output for an activity to SSE subscribers while it is being generated.
+ * Channels are replayed so a client that connects mid-generation still sees the earlier chunks.
+ */
+@Service
+public class RecommendationStreamService {
+
+    public static final String CHUNK_EVENT = "chunk";
+    public static final String RECOMMENDATION_EVENT = "recommendation";
+
+    private final Map<String, Sinks.Many<ServerSentEvent<Object>>> channels = new ConcurrentHashMap<>();
+
+    public Flux<ServerSentEvent<Object>> events(String activityId, Duration timeout) {
+        Sinks.Many<ServerSentEvent<Object>> channel = channel(activityId);
+        return channel.asFlux()
+                .timeout(timeout)
+                .doFinally(signal -> {
+                    if (channel.currentSubscriberCount() == 0) {
+                        channels.remove(activityId, channel);
+                    }
+                });
+    }
+
+    public void open(String activityId) {
+        channel(activityId);
+    }
+
+    public void emitChunk(String activityId, String text) {
+        Sinks.Many<ServerSentEvent<Object>> channel = channels.get(activityId);
+        if (channel != null) {
+            channel.tryEmitNext(ServerSentEvent.builder((Object) text).event(CHUNK_EVENT).build());
+        }
+    }
+
+    @EventListener
+    public void onRecommendationStored(RecommendationStoredEvent event) {
+        complete(event.recommendation());
+    }
+
+    public void complete(Recommendation recommendation) {
+        Sinks.Many<ServerSentEvent<Object>> channel = channels.remove(recommendation.getActivityId());
+        if (channel != null) {
+            channel.tryEmitNext(finalEvent(recommendation));
+            channel.tryEmitComplete();
+        }
+    }
+
+    public void abort(String activityId) {
+        Sinks.Many<ServerSentEvent<Object>> channel = channels.remove(activityId);
+        if (channel != null) {
+            channel.tryEmitComplete();
+        }
+    }
+
+    public ServerSentEvent<Object> finalEvent(Recommendation recommendation) {
+        return ServerSentEvent.builder((Object) recommendation).event(RECOMMENDATION_EVENT).build();
+    }
+
+    private Sinks.Many<ServerSentEvent<Object>> channel(String activityId) {
+        return channels.computeIfAbsent(activityId, id -> Sinks.many().replay().all());
+    }
+}
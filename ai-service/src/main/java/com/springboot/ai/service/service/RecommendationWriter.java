@@ -0,0 +1,108 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.model.Recommendation;
+import com.springboot.ai.service.repository.RecommendationRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Write-behind stage for recommendations. Documents are grouped into unordered bulk upserts
+ * keyed by activityId, flushed by size or time, and each caller is completed only once its own
+ * write is acknowledged.
+ */
+@Service
+@Slf4j
+public class RecommendationWriter {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final RecommendationRepository recommendationRepository;
+    private final boolean bulkEnabled;
+    private final Sinks.Many<PendingWrite> pending = Sinks.many().unicast().onBackpressureBuffer();
+    private final DistributionSummary batchSize;
+    private final Timer bulkWriteTimer;
+    private final Disposable subscription;
+
+    public RecommendationWriter(RecommendationRepository recommendationRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${ai.persistence.bulk.enabled:true}") boolean bulkEnabled,
+                                @Value("${ai.persistence.bulk.max-size:100}") int maxBatchSize,
+                                @Value("${ai.persistence.bulk.flush-interval:PT0.2S}") Duration flushInterval,
+                                @Value("${ai.persistence.bulk.max-concurrent:2}") int maxConcurrentWrites) {
+        this.recommendationRepository = recommendationRepository;
+        this.bulkEnabled = bulkEnabled;
+        this.batchSize = DistributionSummary.builder("ai.persistence.batch.size").register(meterRegistry);
+        this.bulkWriteTimer = Timer.builder("ai.persistence.bulk.write").register(meterRegistry);
+        this.subscription = pending.asFlux()
+                // Fair backpressure holds a timed-out buffer until a write slot frees up instead of overflowing
+                .bufferTimeout(maxBatchSize, flushInterval, true)
+                .flatMap(batch -> Mono.fromRunnable(() -> writeBatch(batch))
+                        .subscribeOn(Schedulers.boundedElastic()), maxConcurrentWrites)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscription.dispose();
+    }
+
+    public Mono<Recommendation> write(Recommendation recommendation) {
+        if (!bulkEnabled) {
+            return Mono.fromCallable(() -> recommendationRepository.upsertByActivityId(recommendation))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .onErrorReturn(DuplicateKeyException.class, recommendation);
+        }
+        Sinks.One<Recommendation> result = Sinks.one();
+        pending.emitNext(new PendingWrite(recommendation, result), Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        return result.asMono();
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        batchSize.record(batch.size());
+        Set<Integer> failed = new HashSet<>();
+        RuntimeException failure = null;
+        try {
+            bulkWriteTimer.record(() -> recommendationRepository.upsertAllByActivityId(
+                    batch.stream().map(PendingWrite::recommendation).toList()));
+        } catch (BulkOperationException e) {
+            // Unordered: everything not listed in the errors was written. A duplicate key means
+            // two upserts for one activityId raced and the other one stored it
+            e.getErrors().stream()
+                    .filter(error -> error.getCode() != DUPLICATE_KEY)
+                    .forEach(error -> failed.add(error.getIndex()));
+            failure = e;
+        } catch (RuntimeException e) {
+            log.error("Bulk upsert of {} recommendations failed", batch.size(), e);
+            batch.forEach(write -> write.result().tryEmitError(e));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            if (failed.contains(i)) {
+                write.result().tryEmitError(failure);
+            } else {
+                write.result().tryEmitValue(write.recommendation());
+            }
+        }
+    }
+
+    private record PendingWrite(Recommendation recommendation, Sinks.One<Recommendation> result) {
+    }
+}
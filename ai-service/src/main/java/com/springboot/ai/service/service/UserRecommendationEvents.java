@@ -0,0 +1,49 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.model.Recommendation;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes newly stored recommendations to a user's SSE subscribers. Only users with an open
+ * connection have a channel; events for everyone else are dropped without any work.
+ */
+@Service
+public class UserRecommendationEvents {
+
+    private final Map<String, Sinks.Many<ServerSentEvent<Object>>> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Live events for the user, with a comment line every heartbeat interval so proxies keep the
+     * connection open.
+     */
+    public Flux<ServerSentEvent<Object>> events(String userId, Duration heartbeat) {
+        Sinks.Many<ServerSentEvent<Object>> channel = channels.computeIfAbsent(userId,
+                id -> Sinks.many().multicast().directBestEffort());
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(heartbeat)
+                .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+        return Flux.merge(channel.asFlux(), heartbeats)
+                .doFinally(signal -> {
+                    if (channel.currentSubscriberCount() == 0) {
+                        channels.remove(userId, channel);
+                    }
+                });
+    }
+
+    public void publish(Recommendation recommendation) {
+        Sinks.Many<ServerSentEvent<Object>> channel = channels.get(recommendation.getUserId());
+        if (channel != null) {
+            // Best effort: a subscriber that cannot keep up misses the event and can reload the list
+            channel.tryEmitNext(ServerSentEvent.builder((Object) recommendation)
+                    .id(recommendation.getActivityId())
+                    .event(RecommendationStreamService.RECOMMENDATION_EVENT)
+                    .build());
+        }
+    }
+}
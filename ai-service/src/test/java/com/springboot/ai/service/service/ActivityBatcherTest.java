@@ -0,0 +1,64 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.model.Activity;
+import com.springboot.ai.service.model.Recommendation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ActivityBatcherTest {
+
+    private ActivityBatcher activityBatcher;
+
+    @AfterEach
+    void tearDown() {
+        activityBatcher.shutdown();
+    }
+
+    @Test
+    void submissionsQueuedWhileEveryBatchSlotIsBusyComplete() throws InterruptedException {
+        Sinks.Empty<Void> geminiReplies = Sinks.empty();
+        // Every batch waits for the release, so the first one holds the only slot
+        activityBatcher = new ActivityBatcher(2, Duration.ofMillis(20), 1,
+                activities -> geminiReplies.asMono()
+                        .then(Mono.fromCallable(() -> activities.stream()
+                                .collect(Collectors.toMap(Activity::getId, this::recommendation)))),
+                activity -> geminiReplies.asMono().then(Mono.fromCallable(() -> recommendation(activity))),
+                e -> false,
+                new SimpleMeterRegistry());
+
+        List<Mono<Recommendation>> results = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            results.add(activityBatcher.submit(activity("activity-" + i)).cache());
+            results.get(i).subscribe();
+            // Several maxWait periods pass with batches nobody requested
+            Thread.sleep(30);
+        }
+        geminiReplies.tryEmitEmpty();
+
+        List<String> completed = Flux.concat(results).map(Recommendation::getActivityId).collectList()
+                .block(Duration.ofSeconds(5));
+        assertEquals(List.of("activity-0", "activity-1", "activity-2", "activity-3", "activity-4",
+                "activity-5", "activity-6"), completed);
+    }
+
+    private Activity activity(String id) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        return activity;
+    }
+
+    private Recommendation recommendation(Activity activity) {
+        return Recommendation.builder().activityId(activity.getId()).build();
+    }
+}
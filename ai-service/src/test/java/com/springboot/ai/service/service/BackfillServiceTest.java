@@ -0,0 +1,147 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.dto.BackfillStatus;
+import com.springboot.ai.service.model.Activity;
+import com.springboot.ai.service.model.BackfillCheckpoint;
+import com.springboot.ai.service.model.Recommendation;
+import com.springboot.ai.service.prompt.PromptBuilder;
+import com.springboot.ai.service.repository.BackfillCheckpointRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BackfillServiceTest {
+
+    private static final int VERSION = 2;
+
+    private final List<Document> activities = new ArrayList<>();
+    private final AtomicReference<BackfillCheckpoint> checkpoint = new AtomicReference<>();
+    private ActivityAIService activityAIService;
+    private RecommendationWriter recommendationWriter;
+    private BackfillService backfillService;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 5; i++) {
+            activities.add(new Document("_id", new ObjectId())
+                    .append("userId", "user-1")
+                    .append("activityType", "RUNNING")
+                    .append("duration", 30 + i));
+        }
+
+        activityAIService = mock(ActivityAIService.class);
+        recommendationWriter = mock(RecommendationWriter.class);
+        when(recommendationWriter.write(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        PromptBuilder promptBuilder = mock(PromptBuilder.class);
+        when(promptBuilder.version()).thenReturn(VERSION);
+        BackfillCheckpointRepository checkpointRepository = mock(BackfillCheckpointRepository.class);
+        when(checkpointRepository.findById(any())).thenAnswer(invocation -> Optional.ofNullable(checkpoint.get()));
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> {
+            checkpoint.set(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+
+        MongoTemplate activityTemplate = mock(MongoTemplate.class);
+        when(activityTemplate.count(any(Query.class), eq("activities")))
+                .thenAnswer(invocation -> (long) matching(invocation.getArgument(0)).size());
+        when(activityTemplate.stream(any(Query.class), eq(Document.class), eq("activities")))
+                .thenAnswer(invocation -> matching(invocation.getArgument(0)).stream());
+        when(activityTemplate.find(any(Query.class), eq(Document.class), eq("activities")))
+                .thenAnswer(invocation -> matching(invocation.getArgument(0)));
+
+        backfillService = new BackfillService(activityAIService, recommendationWriter, mock(ApplicationEventPublisher.class),
+                mock(MongoTemplate.class), checkpointRepository, promptBuilder, "mongodb://unused", 3, 2, 100) {
+            @Override
+            MongoTemplate activityTemplate() {
+                return activityTemplate;
+            }
+        };
+    }
+
+    @Test
+    void activityThatFailedIsRegeneratedOnTheNextRun() throws InterruptedException {
+        String failing = activities.get(1).get("_id").toString();
+        when(activityAIService.generateAiRecommendation(any())).thenAnswer(invocation -> {
+            Activity activity = invocation.getArgument(0);
+            return activity.getId().equals(failing)
+                    ? Mono.error(new IllegalStateException("Gemini reply could not be parsed"))
+                    : Mono.just(analysis(activity));
+        });
+
+        BackfillStatus first = runToCompletion();
+        assertEquals(4, first.getProcessed());
+        assertEquals(1, first.getFailed());
+        assertEquals(activities.get(4).get("_id").toString(), checkpoint.get().getLastActivityId());
+        assertEquals(List.of(failing), checkpoint.get().getFailedActivityIds());
+        verify(recommendationWriter, never()).write(argThat(recommendation -> failing.equals(recommendation.getActivityId())));
+
+        doAnswer(invocation -> Mono.just(analysis(invocation.getArgument(0))))
+                .when(activityAIService).generateAiRecommendation(any());
+
+        BackfillStatus second = runToCompletion();
+        verify(recommendationWriter).write(argThat(recommendation -> failing.equals(recommendation.getActivityId())));
+        // Only the failed activity was retried; the cursor had nothing left after the checkpoint
+        verify(recommendationWriter, times(5)).write(any());
+        assertEquals(5, second.getProcessed());
+        assertEquals(0, second.getFailed());
+        assertTrue(checkpoint.get().getFailedActivityIds().isEmpty());
+    }
+
+    private BackfillStatus runToCompletion() throws InterruptedException {
+        backfillService.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ("RUNNING".equals(backfillService.status().getState()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        BackfillStatus status = backfillService.status();
+        assertEquals("COMPLETED", status.getState());
+        return status;
+    }
+
+    // Supports the two filters BackfillService uses: _id $gt (cursor) and _id $in (retries)
+    @SuppressWarnings("unchecked")
+    private List<Document> matching(Query query) {
+        Object filter = query.getQueryObject().get("_id");
+        if (!(filter instanceof Document idFilter)) {
+            return activities;
+        }
+        if (idFilter.containsKey("$gt")) {
+            ObjectId after = (ObjectId) idFilter.get("$gt");
+            return activities.stream().filter(activity -> activity.getObjectId("_id").compareTo(after) > 0).toList();
+        }
+        Collection<ObjectId> ids = (Collection<ObjectId>) idFilter.get("$in");
+        return activities.stream().filter(activity -> ids.contains(activity.getObjectId("_id"))).toList();
+    }
+
+    private Recommendation analysis(Activity activity) {
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .promptVersion(VERSION)
+                .source(Recommendation.SOURCE_GEMINI)
+                .build();
+    }
+}
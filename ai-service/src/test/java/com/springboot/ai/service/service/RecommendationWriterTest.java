@@ -0,0 +1,67 @@
+package com.springboot.ai.service.service;
+
+import com.springboot.ai.service.model.Recommendation;
+import com.springboot.ai.service.repository.RecommendationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class RecommendationWriterTest {
+
+    private RecommendationWriter recommendationWriter;
+
+    @AfterEach
+    void tearDown() {
+        recommendationWriter.shutdown();
+    }
+
+    @Test
+    void writesQueuedWhileEveryWriteSlotIsBusyComplete() throws InterruptedException {
+        CountDownLatch slotHeld = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecommendationRepository repository = mock(RecommendationRepository.class);
+        doAnswer(invocation -> {
+            slotHeld.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(repository).upsertAllByActivityId(anyList());
+        recommendationWriter = new RecommendationWriter(repository, new SimpleMeterRegistry(),
+                true, 2, Duration.ofMillis(20), 1);
+
+        Mono<Recommendation> first = recommendationWriter.write(recommendation("activity-0"));
+        first.subscribe();
+        assertTrue(slotHeld.await(5, TimeUnit.SECONDS));
+
+        // The only write slot is blocked, so several flush intervals pass with buffers nobody requested
+        List<Mono<Recommendation>> later = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            later.add(recommendationWriter.write(recommendation("activity-" + i)).cache());
+            later.get(i - 1).subscribe();
+            Thread.sleep(30);
+        }
+        release.countDown();
+
+        assertEquals("activity-0", first.block(Duration.ofSeconds(5)).getActivityId());
+        List<String> written = Flux.concat(later).map(Recommendation::getActivityId).collectList()
+                .block(Duration.ofSeconds(5));
+        assertEquals(List.of("activity-1", "activity-2", "activity-3", "activity-4", "activity-5"), written);
+    }
+
+    private Recommendation recommendation(String activityId) {
+        return Recommendation.builder().activityId(activityId).build();
+    }
+}
@@ -1,6 +1,6 @@
 import React, { useEffect, useState } from 'react'
 import { useParams } from 'react-router'
-import { getActivityDetail } from '../services/api';
+import { getActivityDetail, subscribeToRecommendations } from '../services/api';
 import { Box, Card, CardContent, Divider, Typography } from '@mui/material';
 
 const ActivityDetail = () => {
@@ -10,17 +10,34 @@ const ActivityDetail = () => {
   const [recommendation, setRecommendation] = useState(null);
 
   useEffect(() => {
+    const show = (data) => {
+      setActivity(data);
+      setRecommendation(data.recommendation);
+    }
+
+    // Listen before fetching, so a recommendation stored in between is not missed
+    const unsubscribe = subscribeToRecommendations((data) => {
+      if (data.activityId === id) {
+        show(data);
+        unsubscribe();
+      }
+    });
+
     const fetchActivityDetail = async () => {
       try {
         const response = await getActivityDetail(id);
-        setActivity(response.data);
-        setRecommendation(response.data.recommendation);
+        show(response.data);
+        unsubscribe();
       } catch (error) {
-        console.error(error);
+        // 404 until the recommendation is generated; it then arrives on the event stream
+        if (error.response?.status !== 404) {
+          console.error(error);
+        }
       }
     }
 
     fetchActivityDetail();
+    return unsubscribe;
   }, [id])
 
   if(!activity){
@@ -1,17 +1,24 @@
-import { Card, CardContent, Grid, Typography } from "@mui/material";
+import { Button, Card, CardContent, Grid, Typography } from "@mui/material";
 import React, { useEffect, useState } from "react";
 import { useNavigate } from "react-router";
-import { getActivities } from "../services/api";
+import { getActivitySummaries } from "../services/api";
 
 const ActivityList = () => {
   const [activities, setActivities] = useState([]);
+  // Cursor of the next, older page; null once the whole history is loaded
+  const [nextCursor, setNextCursor] = useState(null);
+  const [loading, setLoading] = useState(false);
   const navigate = useNavigate();
-  const fetchActivities = async () => {
+  const fetchActivities = async (cursor) => {
+    setLoading(true);
     try {
-      const response = await getActivities();
-      setActivities(response.data);
+      const response = await getActivitySummaries({ size: 50, cursor });
+      setActivities((loaded) => cursor ? [...loaded, ...response.data.items] : response.data.items);
+      setNextCursor(response.data.nextCursor);
     } catch (error) {
       console.error(error);
+    } finally {
+      setLoading(false);
     }
   };
 
@@ -39,6 +46,11 @@ const ActivityList = () => {
           </Card>
         </Grid>
       ))}
+      {nextCursor && (
+        <Button variant="outlined" disabled={loading} onClick={() => fetchActivities(nextCursor)}>
+          Load more
+        </Button>
+      )}
     </Grid>
   );
 };
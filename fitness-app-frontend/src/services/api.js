@@ -22,5 +22,53 @@ api.interceptors.request.use((config) => {
 });
 
 export const getActivities = () => api.get('/activities');
+// Keyset-paginated list view; pass the previous page's nextCursor as params.cursor
+export const getActivitySummaries = (params) => api.get('/activities/summaries', { params });
 export const addActivity = (activity) => api.post('/activities', activity);
-export const getActivityDetail = (id) => api.get(`/recommendations/activity/${id}`);
\ No newline at end of file
+export const getActivityDetail = (id) => api.get(`/recommendations/activity/${id}`);
+
+// Server-sent events of the user's newly stored recommendations. fetch rather than EventSource,
+// which cannot send the Authorization header. Returns a function that closes the stream.
+export const subscribeToRecommendations = (onRecommendation) => {
+  const controller = new AbortController();
+  const headers = { Accept: 'text/event-stream' };
+  const userId = localStorage.getItem('userId');
+  const token = localStorage.getItem('token');
+  if(token){
+    headers['Authorization'] = `Bearer ${token}`;
+  }
+
+  const read = async () => {
+    const response = await fetch(`${API_URL}/recommendations/user/${userId}/events`, {
+      headers,
+      signal: controller.signal
+    });
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    for (;;) {
+      const { value, done } = await reader.read();
+      if (done) {
+        return;
+      }
+      buffer += value;
+      const events = buffer.split(/\r?\n\r?\n/);
+      buffer = events.pop();
+      events.forEach((event) => {
+        const data = event.split(/\r?\n/)
+          .filter((line) => line.startsWith('data:'))
+          .map((line) => line.slice(5))
+          .join('\n');
+        if (data) {
+          onRecommendation(JSON.parse(data));
+        }
+      });
+    }
+  };
+
+  read().catch((error) => {
+    if (error.name !== 'AbortError') {
+      console.error(error);
+    }
+  });
+  return () => controller.abort();
+};